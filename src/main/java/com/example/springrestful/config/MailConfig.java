@@ -23,9 +23,19 @@ public class MailConfig {
     @Value("${spring.mail.password}")
     private String mailPassword;
 
+    @Value("${application.mail.pool-size}")
+    private int poolSize;
+
+    @Value("${application.mail.max-messages-per-connection}")
+    private int maxMessagesPerConnection;
+
+    @Value("${application.mail.borrow-timeout-ms}")
+    private long borrowTimeoutMillis;
+
     @Bean
     public JavaMailSender javaMailSender() {
-        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        // Reuses authenticated SMTP connections across sends
+        JavaMailSenderImpl mailSender = new PooledJavaMailSender(poolSize, maxMessagesPerConnection, borrowTimeoutMillis);
         mailSender.setHost(mailHost);
         mailSender.setPort(mailPort);
         mailSender.setUsername(mailUsername);
@@ -35,7 +45,6 @@ public class MailConfig {
         props.put("mail.transport.protocol", "smtp");
         props.put("mail.smtp.auth", "true");
         props.put("mail.smtp.starttls.enable", "true");
-        props.put("mail.debug", "true");
 
         return mailSender;
     }
@@ -0,0 +1,150 @@
+package com.example.springrestful.config;
+
+import jakarta.mail.Address;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.lang.Nullable;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link JavaMailSenderImpl} that keeps up to {@code poolSize} authenticated SMTP connections
+ * open instead of opening, STARTTLS-ing and authenticating a new one for every send.
+ * <p>
+ * A borrowed connection is health-checked with {@code NOOP} ({@link Transport#isConnected()})
+ * and reopened if the server dropped it. All messages of one {@code send(...)} call go over
+ * the same connection; after a failed message the connection is checked again before the
+ * next one. Connections are recycled after {@code maxMessagesPerConnection} messages, since
+ * many servers cap messages per session.
+ */
+@Slf4j
+public class PooledJavaMailSender extends JavaMailSenderImpl implements DisposableBean {
+
+    private final int maxMessagesPerConnection;
+    private final long borrowTimeoutMillis;
+    private final Semaphore permits;
+    // LIFO keeps the most recently used, most likely still open connections in rotation
+    private final BlockingDeque<PooledTransport> idle = new LinkedBlockingDeque<>();
+
+    private static class PooledTransport {
+        private Transport transport;
+        private int sentMessages;
+    }
+
+    public PooledJavaMailSender(int poolSize, int maxMessagesPerConnection, long borrowTimeoutMillis) {
+        this.maxMessagesPerConnection = maxMessagesPerConnection;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.permits = new Semaphore(poolSize, true);
+    }
+
+    @Override
+    protected void doSend(MimeMessage[] mimeMessages, @Nullable Object[] originalMessages) throws MailException {
+        Map<Object, Exception> failedMessages = new LinkedHashMap<>();
+        PooledTransport pooled = borrow();
+        boolean verify = true;
+        try {
+            for (int i = 0; i < mimeMessages.length; i++) {
+                MimeMessage mimeMessage = mimeMessages[i];
+                try {
+                    if (verify) {
+                        ensureConnected(pooled);
+                        verify = false;
+                    }
+                    send(pooled, mimeMessage);
+                } catch (Exception e) {
+                    failedMessages.put(originalMessages != null ? originalMessages[i] : mimeMessage, e);
+                    // The failure may have been the connection itself
+                    verify = true;
+                }
+            }
+        } finally {
+            release(pooled);
+        }
+
+        if (!failedMessages.isEmpty()) {
+            throw new MailSendException(failedMessages);
+        }
+    }
+
+    private void send(PooledTransport pooled, MimeMessage mimeMessage) throws MessagingException {
+        if (pooled.sentMessages >= maxMessagesPerConnection) {
+            closeQuietly(pooled);
+            ensureConnected(pooled);
+        }
+
+        // Same preparation as JavaMailSenderImpl
+        if (mimeMessage.getSentDate() == null) {
+            mimeMessage.setSentDate(new Date());
+        }
+        String messageId = mimeMessage.getMessageID();
+        mimeMessage.saveChanges();
+        if (messageId != null) {
+            mimeMessage.setHeader("Message-ID", messageId);
+        }
+        Address[] addresses = mimeMessage.getAllRecipients();
+        pooled.transport.sendMessage(mimeMessage, addresses != null ? addresses : new Address[0]);
+        pooled.sentMessages++;
+    }
+
+    private void ensureConnected(PooledTransport pooled) throws MessagingException {
+        if (pooled.transport != null && pooled.transport.isConnected()) {
+            return;
+        }
+        if (pooled.transport != null) {
+            log.debug("🔌 SMTP connection lost, reconnecting");
+            closeQuietly(pooled);
+        }
+        pooled.transport = connectTransport();
+        pooled.sentMessages = 0;
+    }
+
+    private PooledTransport borrow() {
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new MailSendException("No SMTP connection available within " + borrowTimeoutMillis + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MailSendException("Interrupted while waiting for an SMTP connection", e);
+        }
+        PooledTransport pooled = idle.pollFirst();
+        return pooled != null ? pooled : new PooledTransport();
+    }
+
+    private void release(PooledTransport pooled) {
+        idle.offerFirst(pooled);
+        permits.release();
+    }
+
+    private static void closeQuietly(PooledTransport pooled) {
+        if (pooled.transport == null) {
+            return;
+        }
+        try {
+            pooled.transport.close();
+        } catch (MessagingException e) {
+            log.debug("Failed to close SMTP connection", e);
+        }
+        pooled.transport = null;
+    }
+
+    @Override
+    public void destroy() {
+        PooledTransport pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            closeQuietly(pooled);
+        }
+    }
+}
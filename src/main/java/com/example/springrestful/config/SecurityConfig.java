@@ -2,11 +2,11 @@
 package com.example.springrestful.config;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.AuthenticationProvider;
-import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -14,44 +14,60 @@ import org.springframework.security.config.annotation.web.configuration.EnableWe
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import com.example.springrestful.security.BoundedPasswordEncoder;
 import com.example.springrestful.security.JwtAuthenticationFilter;
+import com.example.springrestful.security.PasswordHashingExecutor;
+import com.example.springrestful.security.PublicEndpoints;
+import com.example.springrestful.security.RehashingAuthenticationProvider;
+
+import java.util.Map;
 
 @Configuration
 @EnableWebSecurity
 @EnableMethodSecurity
 @RequiredArgsConstructor
 public class SecurityConfig {
+    private static final String BCRYPT_ID = "bcrypt";
+    private static final String ARGON2_ID = "argon2";
+
     private final UserDetailsService userDetailsService;
+    private final UserDetailsPasswordService userDetailsPasswordService;
     private final JwtAuthenticationFilter jwtAuthFilter;
 
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(
+            HttpSecurity http,
+            AuthenticationProvider authenticationProvider
+    ) throws Exception {
         http
                 .csrf(AbstractHttpConfigurer::disable)
                 .authorizeHttpRequests(auth -> auth
-                        .requestMatchers("/api/v1/auth/**").permitAll()
+                        .requestMatchers(PublicEndpoints.ANONYMOUS).permitAll()
+                        .requestMatchers(PublicEndpoints.STATIC_RESOURCES).permitAll()
+                        .requestMatchers(PublicEndpoints.OPTIONAL_AUTHENTICATION).permitAll()
                         .requestMatchers("/api/v1/admin/**").hasRole("ADMIN")
                         .anyRequest().authenticated()
                 )
                 .sessionManagement(session -> session
                         .sessionCreationPolicy(SessionCreationPolicy.STATELESS)
                 )
-                .authenticationProvider(authenticationProvider())
+                .authenticationProvider(authenticationProvider)
                 .addFilterBefore(jwtAuthFilter, UsernamePasswordAuthenticationFilter.class);
 
         return http.build();
     }
 
     @Bean
-    public AuthenticationProvider authenticationProvider() {
-        DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
-        authProvider.setUserDetailsService(userDetailsService);
-        authProvider.setPasswordEncoder(passwordEncoder());
-        return authProvider;
+    public AuthenticationProvider authenticationProvider(BoundedPasswordEncoder passwordEncoder) {
+        // Rehashes the password on successful login when the stored hash is below the target cost
+        return new RehashingAuthenticationProvider(userDetailsService, passwordEncoder, userDetailsPasswordService);
     }
 
     @Bean
@@ -59,8 +75,32 @@ public class SecurityConfig {
         return config.getAuthenticationManager();
     }
 
+    /**
+     * Stores hashes as {@code {id}hash} so the algorithm and cost can change without locking
+     * anyone out. Legacy hashes without a prefix are BCrypt. Hashing runs on the bounded
+     * {@link PasswordHashingExecutor}.
+     */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public BoundedPasswordEncoder passwordEncoder(
+            @Value("${application.password-hashing.encoder}") String encoderId,
+            @Value("${application.password-hashing.bcrypt.strength}") int bcryptStrength,
+            @Value("${application.password-hashing.argon2.salt-length}") int argon2SaltLength,
+            @Value("${application.password-hashing.argon2.hash-length}") int argon2HashLength,
+            @Value("${application.password-hashing.argon2.parallelism}") int argon2Parallelism,
+            @Value("${application.password-hashing.argon2.memory-kb}") int argon2MemoryKb,
+            @Value("${application.password-hashing.argon2.iterations}") int argon2Iterations,
+            PasswordHashingExecutor passwordHashingExecutor
+    ) {
+        BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(bcryptStrength);
+        Map<String, PasswordEncoder> encoders = Map.of(
+                BCRYPT_ID, bcrypt,
+                ARGON2_ID, new Argon2PasswordEncoder(
+                        argon2SaltLength, argon2HashLength, argon2Parallelism, argon2MemoryKb, argon2Iterations
+                )
+        );
+
+        DelegatingPasswordEncoder encoder = new DelegatingPasswordEncoder(encoderId, encoders);
+        encoder.setDefaultPasswordEncoderForMatches(bcrypt);
+        return new BoundedPasswordEncoder(encoder, passwordHashingExecutor);
     }
 }
\ No newline at end of file
@@ -1,4 +1,42 @@
 package com.example.springrestful.controller;
 
+import com.example.springrestful.security.EmailQueueService;
+import com.example.springrestful.security.MailQueue;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/v1/admin")
+@RequiredArgsConstructor
+@PreAuthorize("hasRole('ADMIN')")
 public class AdminController {
+    private final EmailQueueService emailQueueService;
+
+    /**
+     * Emails that exhausted their retries, oldest first, with the last error.
+     */
+    @GetMapping("/email-queues/{queue}/dead-letters")
+    public ResponseEntity<List<Map<String, String>>> getDeadLetters(
+            @PathVariable MailQueue queue,
+            @RequestParam(defaultValue = "0") int offset,
+            @RequestParam(defaultValue = "50") int limit) {
+        return ResponseEntity.ok(emailQueueService.deadLetters(queue, offset, Math.min(limit, 500)));
+    }
+
+    /**
+     * Puts up to {@code count} dead letters, oldest first, back on the queue with a fresh
+     * retry budget.
+     */
+    @PostMapping("/email-queues/{queue}/dead-letters/replay")
+    public ResponseEntity<Map<String, Long>> replayDeadLetters(
+            @PathVariable MailQueue queue,
+            @RequestParam(defaultValue = "100") int count) {
+        long replayed = emailQueueService.replayDeadLetters(queue, count);
+        return ResponseEntity.ok(Map.of("replayed", replayed));
+    }
 }
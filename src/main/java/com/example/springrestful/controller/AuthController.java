@@ -71,7 +71,7 @@ public class AuthController {
             HttpServletResponse response
     ) {
         // Extract refresh token from request
-        String refreshToken = jwtUtil.extractTokenFromRequest(request);
+        String refreshToken = jwtUtil.extractRefreshTokenFromRequest(request);
 
         // Refresh token logic
         AuthResponse authResponse = authService.refreshToken(refreshToken);
@@ -1,34 +1,52 @@
 package com.example.springrestful.controller;
 
+import com.example.springrestful.dto.BulkInvitationJobResponse;
+import com.example.springrestful.dto.BulkInvitationRequest;
+import com.example.springrestful.dto.InvitationPageResponse;
 import com.example.springrestful.dto.InvitationRequest;
 import com.example.springrestful.dto.InvitationResponse;
 import com.example.springrestful.entity.EmployeeInvitation;
+import com.example.springrestful.service.BulkInvitationService;
 import com.example.springrestful.service.EmployeeInvitationService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import jakarta.validation.Valid;
 
-import java.util.List;
-import java.util.stream.Collectors;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
 
 @RestController
 @RequestMapping("/api/v1/invitations")
 @RequiredArgsConstructor
 public class EmployeeInvitationController {
     private final EmployeeInvitationService invitationService;
+    private final BulkInvitationService bulkInvitationService;
 
     @GetMapping
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<List<InvitationResponse>> getOrganizationInvitations(
-            @RequestParam Long organizationId) {
-        List<EmployeeInvitation> invitations = invitationService
-                .findByOrganizationId(organizationId);
-        return ResponseEntity.ok(invitations.stream()
-                .map(InvitationResponse::fromEntity)
-                .collect(Collectors.toList()));
+    public ResponseEntity<InvitationPageResponse> getOrganizationInvitations(
+            @RequestParam Long organizationId,
+            @RequestParam(defaultValue = "PENDING") EmployeeInvitation.InvitationStatus status,
+            @RequestParam(required = false) String emailPrefix,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime expiresAfter,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime expiresBefore,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(invitationService.listInvitations(
+                organizationId,
+                status,
+                emailPrefix,
+                expiresAfter,
+                expiresBefore,
+                cursor,
+                size
+        ));
     }
 
     @PostMapping
@@ -44,6 +62,32 @@ public class EmployeeInvitationController {
         return ResponseEntity.ok(InvitationResponse.fromEntity(invitation));
     }
 
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<BulkInvitationJobResponse> createBulkInvitations(
+            @Valid @RequestBody BulkInvitationRequest request) {
+        return ResponseEntity.accepted().body(bulkInvitationService.submit(
+                request.getOrganizationId(),
+                request.getEmails()
+        ));
+    }
+
+    @PostMapping(value = "/bulk", consumes = "text/csv")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<BulkInvitationJobResponse> createBulkInvitationsFromCsv(
+            @RequestParam Long organizationId,
+            InputStream csv) throws IOException {
+        return ResponseEntity.accepted().body(bulkInvitationService.submitCsv(organizationId, csv));
+    }
+
+    @GetMapping("/bulk/{jobId}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<BulkInvitationJobResponse> getBulkInvitationJob(@PathVariable String jobId) {
+        return bulkInvitationService.getJob(jobId)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
     @PostMapping("/{token}/accept")
     public ResponseEntity<Void> acceptInvitation(@PathVariable String token) {
         invitationService.acceptInvitation(token);
@@ -0,0 +1,31 @@
+package com.example.springrestful.controller;
+
+import com.example.springrestful.security.JwtKeyManager;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Duration;
+
+@RestController
+@RequiredArgsConstructor
+public class JwksController {
+    private final JwtKeyManager keyManager;
+
+    /**
+     * Public keys for verifying our tokens. Clients revalidate with the ETag and get a 304
+     * while the key set is unchanged; on an unknown kid they should refetch.
+     */
+    @GetMapping(value = "/.well-known/jwks.json", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<String> getJwks() {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(Duration.ofMinutes(5))
+                        .cachePublic()
+                        .staleWhileRevalidate(Duration.ofMinutes(1)))
+                .eTag(keyManager.getJwksEtag())
+                .body(keyManager.getJwksJson());
+    }
+}
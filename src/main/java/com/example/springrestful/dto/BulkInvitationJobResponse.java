@@ -0,0 +1,20 @@
+package com.example.springrestful.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class BulkInvitationJobResponse {
+    private String jobId;
+    private Long organizationId;
+    private String status;
+    private long total;
+    private long processed;
+    private long created;
+    private long skippedDuplicates;
+    private long invalid;
+    private String error;
+    private String createdAt;
+    private String completedAt;
+}
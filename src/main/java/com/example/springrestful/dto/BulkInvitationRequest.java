@@ -0,0 +1,17 @@
+package com.example.springrestful.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BulkInvitationRequest {
+    @NotNull(message = "Organization ID is required")
+    private Long organizationId;
+
+    // Malformed addresses are counted as invalid in the job rather than failing the request
+    @NotEmpty(message = "At least one email is required")
+    private List<String> emails;
+}
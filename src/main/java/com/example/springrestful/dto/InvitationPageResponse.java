@@ -0,0 +1,16 @@
+package com.example.springrestful.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class InvitationPageResponse {
+    private List<InvitationResponse> items;
+    // Pass back as the cursor parameter for the next page; null on the last page
+    private String nextCursor;
+    // Total matching the filters, cached briefly so it may lag recent changes
+    private long approximateTotal;
+}
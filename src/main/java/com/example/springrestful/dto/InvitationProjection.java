@@ -0,0 +1,106 @@
+package com.example.springrestful.dto;
+
+import com.example.springrestful.entity.EmployeeInvitation;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Everything the accept, cancel and validate paths need about an invitation, cached as a Redis
+ * hash under {@code invitation:<token>} so a cache hit needs no database read.
+ * <p>
+ * The {@code v} field versions the layout. An entry written under another version, or missing
+ * a required field, is treated as a miss and reloaded. {@code organizationName} and
+ * {@code acceptedAt} are optional and only written when set.
+ */
+@Getter
+@Builder
+public class InvitationProjection {
+    public static final String SCHEMA_VERSION = "2";
+
+    private static final String VERSION = "v";
+    private static final String ID = "id";
+    private static final String TOKEN = "token";
+    private static final String EMAIL = "email";
+    private static final String ORGANIZATION_ID = "organizationId";
+    private static final String ORGANIZATION_NAME = "organizationName";
+    private static final String STATUS = "status";
+    private static final String TOKEN_EXPIRY = "tokenExpiry";
+    private static final String ACCEPTED_AT = "acceptedAt";
+
+    private final Long id;
+    private final String token;
+    private final String email;
+    private final Long organizationId;
+    private final String organizationName;
+    private final EmployeeInvitation.InvitationStatus status;
+    private final LocalDateTime tokenExpiry;
+    private final LocalDateTime acceptedAt;
+
+    /**
+     * Reads the organization's id and name, so the organization should already be loaded.
+     */
+    public static InvitationProjection fromEntity(EmployeeInvitation invitation) {
+        return InvitationProjection.builder()
+                .id(invitation.getId())
+                .token(invitation.getInvitationToken())
+                .email(invitation.getEmail())
+                .organizationId(invitation.getOrganization().getId())
+                .organizationName(invitation.getOrganization().getName())
+                .status(invitation.getStatus())
+                .tokenExpiry(invitation.getTokenExpiry())
+                .acceptedAt(invitation.getAcceptedAt())
+                .build();
+    }
+
+    public static Optional<InvitationProjection> fromHash(Map<Object, Object> hash) {
+        if (!SCHEMA_VERSION.equals(hash.get(VERSION))) {
+            return Optional.empty();
+        }
+        try {
+            Object acceptedAt = hash.get(ACCEPTED_AT);
+            return Optional.of(InvitationProjection.builder()
+                    .id(Long.parseLong((String) hash.get(ID)))
+                    .token(requireField(hash, TOKEN))
+                    .email(requireField(hash, EMAIL))
+                    .organizationId(Long.parseLong((String) hash.get(ORGANIZATION_ID)))
+                    .organizationName((String) hash.get(ORGANIZATION_NAME))
+                    .status(EmployeeInvitation.InvitationStatus.valueOf((String) hash.get(STATUS)))
+                    .tokenExpiry(LocalDateTime.parse((String) hash.get(TOKEN_EXPIRY)))
+                    .acceptedAt(acceptedAt == null ? null : LocalDateTime.parse((String) acceptedAt))
+                    .build());
+        } catch (RuntimeException e) {
+            return Optional.empty();
+        }
+    }
+
+    public Map<String, String> toHash() {
+        Map<String, String> hash = new HashMap<>();
+        hash.put(VERSION, SCHEMA_VERSION);
+        hash.put(ID, String.valueOf(id));
+        hash.put(TOKEN, token);
+        hash.put(EMAIL, email);
+        hash.put(ORGANIZATION_ID, String.valueOf(organizationId));
+        if (organizationName != null) {
+            hash.put(ORGANIZATION_NAME, organizationName);
+        }
+        hash.put(STATUS, status.name());
+        hash.put(TOKEN_EXPIRY, tokenExpiry.toString());
+        if (acceptedAt != null) {
+            hash.put(ACCEPTED_AT, acceptedAt.toString());
+        }
+        return hash;
+    }
+
+    private static String requireField(Map<Object, Object> hash, String field) {
+        Object value = hash.get(field);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing cached invitation field: " + field);
+        }
+        return (String) value;
+    }
+}
@@ -2,22 +2,39 @@ package com.example.springrestful.dto;
 
 import com.example.springrestful.entity.EmployeeInvitation;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
 
 @Data
+@NoArgsConstructor
 public class InvitationResponse {
     private Long id;
     private String email;
     private String status;
     private LocalDateTime expiryDate;
+    private LocalDateTime createdAt;
+
+    // Used by the listing query's constructor projection
+    public InvitationResponse(Long id,
+                              String email,
+                              EmployeeInvitation.InvitationStatus status,
+                              LocalDateTime expiryDate,
+                              LocalDateTime createdAt) {
+        this.id = id;
+        this.email = email;
+        this.status = status.name();
+        this.expiryDate = expiryDate;
+        this.createdAt = createdAt;
+    }
 
     public static InvitationResponse fromEntity(EmployeeInvitation invitation) {
-        InvitationResponse response = new InvitationResponse();
-        response.setId(invitation.getId());
-        response.setEmail(invitation.getEmail());
-        response.setStatus(invitation.getStatus().name());
-        response.setExpiryDate(invitation.getTokenExpiry());
-        return response;
+        return new InvitationResponse(
+                invitation.getId(),
+                invitation.getEmail(),
+                invitation.getStatus(),
+                invitation.getTokenExpiry(),
+                invitation.getCreatedAt()
+        );
     }
-}
\ No newline at end of file
+}
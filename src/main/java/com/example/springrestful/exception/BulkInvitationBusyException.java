@@ -0,0 +1,7 @@
+package com.example.springrestful.exception;
+
+public class BulkInvitationBusyException extends RuntimeException {
+    public BulkInvitationBusyException(String message) {
+        super(message);
+    }
+}
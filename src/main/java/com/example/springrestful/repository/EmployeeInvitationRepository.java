@@ -1,9 +1,16 @@
 package com.example.springrestful.repository;
 
+import com.example.springrestful.dto.InvitationResponse;
 import com.example.springrestful.entity.EmployeeInvitation;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -11,7 +18,52 @@ import java.util.Optional;
 public interface EmployeeInvitationRepository extends JpaRepository<EmployeeInvitation, Long> {
     Optional<EmployeeInvitation> findByInvitationToken(String token);
 
-    List<EmployeeInvitation> findByOrganizationIdAndStatus(Long organizationId, EmployeeInvitation.InvitationStatus status);
+    @Query("SELECT i FROM EmployeeInvitation i JOIN FETCH i.organization WHERE i.invitationToken = :token")
+    Optional<EmployeeInvitation> findWithOrganizationByInvitationToken(@Param("token") String token);
+
+    @Modifying
+    @Query("UPDATE EmployeeInvitation i SET i.status = :newStatus, i.acceptedAt = :acceptedAt " +
+            "WHERE i.id = :id AND i.status = :currentStatus")
+    int updateStatusIfCurrent(
+            @Param("id") Long id,
+            @Param("currentStatus") EmployeeInvitation.InvitationStatus currentStatus,
+            @Param("newStatus") EmployeeInvitation.InvitationStatus newStatus,
+            @Param("acceptedAt") LocalDateTime acceptedAt
+    );
+
+    /**
+     * One page of an organization's invitations in {@code (createdAt, id)} order, starting after
+     * the given position. Only the listed columns are read, so no association is loaded.
+     */
+    @Query("SELECT new com.example.springrestful.dto.InvitationResponse(" +
+            "i.id, i.email, i.status, i.tokenExpiry, i.createdAt) FROM EmployeeInvitation i " +
+            "WHERE i.organization.id = :organizationId AND i.status = :status " +
+            "AND i.email LIKE :emailPattern ESCAPE '\\' " +
+            "AND i.tokenExpiry >= :expiresAfter AND i.tokenExpiry < :expiresBefore " +
+            "AND (i.createdAt, i.id) > (:afterCreatedAt, :afterId) " +
+            "ORDER BY i.createdAt, i.id")
+    List<InvitationResponse> findPageAfter(
+            @Param("organizationId") Long organizationId,
+            @Param("status") EmployeeInvitation.InvitationStatus status,
+            @Param("emailPattern") String emailPattern,
+            @Param("expiresAfter") LocalDateTime expiresAfter,
+            @Param("expiresBefore") LocalDateTime expiresBefore,
+            @Param("afterCreatedAt") LocalDateTime afterCreatedAt,
+            @Param("afterId") Long afterId,
+            Limit limit
+    );
+
+    @Query("SELECT count(i) FROM EmployeeInvitation i " +
+            "WHERE i.organization.id = :organizationId AND i.status = :status " +
+            "AND i.email LIKE :emailPattern ESCAPE '\\' " +
+            "AND i.tokenExpiry >= :expiresAfter AND i.tokenExpiry < :expiresBefore")
+    long countMatching(
+            @Param("organizationId") Long organizationId,
+            @Param("status") EmployeeInvitation.InvitationStatus status,
+            @Param("emailPattern") String emailPattern,
+            @Param("expiresAfter") LocalDateTime expiresAfter,
+            @Param("expiresBefore") LocalDateTime expiresBefore
+    );
 
     boolean existsByEmailAndOrganizationIdAndStatus(String email, Long organizationId, EmployeeInvitation.InvitationStatus status);
 
@@ -22,4 +74,12 @@ public interface EmployeeInvitationRepository extends JpaRepository<EmployeeInvi
             Long organizationId,
             EmployeeInvitation.InvitationStatus status
     );
+
+    @Query("SELECT i.email FROM EmployeeInvitation i " +
+            "WHERE i.organization.id = :organizationId AND i.status = :status AND i.email IN :emails")
+    List<String> findEmailsByOrganizationIdAndStatusAndEmailIn(
+            @Param("organizationId") Long organizationId,
+            @Param("status") EmployeeInvitation.InvitationStatus status,
+            @Param("emails") Collection<String> emails
+    );
 }
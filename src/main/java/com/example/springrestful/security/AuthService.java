@@ -5,11 +5,13 @@ import com.example.springrestful.dto.LoginRequest;
 import com.example.springrestful.dto.UserRegistrationRequest;
 import com.example.springrestful.entity.User;
 import com.example.springrestful.enums.UserRole;
+import com.example.springrestful.exception.PasswordHashingBusyException;
 import com.example.springrestful.exception.UserAuthenticationException;
 import com.example.springrestful.exception.VerificationResendLimitException;
 import com.example.springrestful.mapper.AuthMapper;
 import com.example.springrestful.repository.AuthRepository;
 import com.example.springrestful.repository.OrganizationRepository;
+import com.example.springrestful.service.OutboxService;
 import com.example.springrestful.service.impl.CustomUserDetailsImpl;
 import com.example.springrestful.util.JwtUtil;
 import jakarta.servlet.http.HttpServletResponse;
@@ -23,12 +25,12 @@ import org.springframework.security.authentication.UsernamePasswordAuthenticatio
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.nio.file.AccessDeniedException;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.Optional;
 import java.util.Set;
@@ -51,7 +53,6 @@ public class AuthService {
     @Value("${jwt.password-reset-token-expiry-minutes}")
     private int passwordResetTokenExpiryMinutes;
 
-    private final UserDetailsService userDetailsService;
     private final AuthRepository authRepository;
     private final OrganizationRepository organizationRepository;
     private final PasswordEncoder passwordEncoder;
@@ -59,6 +60,9 @@ public class AuthService {
     private final AuthenticationManager authenticationManager;
     private final EmailService emailService;
     private final RedisTemplate<String, String> redisTemplate;
+    private final UserDetailsCache userDetailsCache;
+    private final VerificationCodeHasher verificationCodeHasher;
+    private final OutboxService outboxService;
 
     private static final String VERIFICATION_CODE_PREFIX = "verification:";
     private static final String VERIFICATION_ATTEMPTS_PREFIX = "verification_attempts:";
@@ -148,21 +152,21 @@ public class AuthService {
 
             // Step 2: Generate and store email verification code
             String plainVerificationCode = emailService.generateVerificationCode();
-            String hashedVerificationCode = emailService.hashVerificationCode(plainVerificationCode);
-
-            // Store verification code in Redis
-            String verificationKey = VERIFICATION_CODE_PREFIX + request.getEmail();
-            redisTemplate.opsForValue().set(
-                    verificationKey,
-                    hashedVerificationCode,
-                    verificationCodeExpiryMinutes,
-                    TimeUnit.MINUTES
+            String hashedVerificationCode = verificationCodeHasher.hash(
+                    VerificationCodeHasher.Purpose.EMAIL_VERIFICATION, request.getEmail(), plainVerificationCode
             );
 
             user = authRepository.save(user);
 
-            // Send verification email
-            emailService.sendVerificationCode(user.getEmail(), plainVerificationCode);
+            // Store the code and send the email once the user row is committed
+            outboxService.recordCodeIssued(
+                    VerificationCodeHasher.Purpose.EMAIL_VERIFICATION,
+                    user.getEmail(),
+                    VERIFICATION_CODE_PREFIX + user.getEmail(),
+                    hashedVerificationCode,
+                    plainVerificationCode,
+                    Duration.ofMinutes(verificationCodeExpiryMinutes)
+            );
 
             // Debug logging for verification code
             log.info("🔐 Registration successful for user: {}", user.getUsername());
@@ -179,7 +183,7 @@ public class AuthService {
                     .message("Registration successful! Please check your email for verification code.")
                     .build();
 
-        } catch (UserAuthenticationException e) {
+        } catch (UserAuthenticationException | PasswordHashingBusyException e) {
             throw e;
         } catch (Exception e) {
             log.error("💥 Unexpected error during registration", e);
@@ -218,7 +222,19 @@ public class AuthService {
             log.debug("🔍 Verifying code for email: {}", email);
             log.debug("📝 Provided code: {}", providedVerificationCode);
 
-            if (!passwordEncoder.matches(providedVerificationCode, storedHashedCode)) {
+            VerificationCodeHasher.Result result = verificationCodeHasher.verify(
+                    VerificationCodeHasher.Purpose.EMAIL_VERIFICATION,
+                    email,
+                    providedVerificationCode,
+                    storedHashedCode,
+                    verificationKey
+            );
+            if (result == VerificationCodeHasher.Result.TOO_MANY_ATTEMPTS) {
+                throw new UserAuthenticationException(
+                        "Too many invalid attempts. Please request a new verification code."
+                );
+            }
+            if (result != VerificationCodeHasher.Result.MATCHED) {
                 log.warn("❌ Invalid verification code attempt for email: {}", email);
                 throw new UserAuthenticationException(
                         "Invalid verification code. Please check and try again."
@@ -227,13 +243,16 @@ public class AuthService {
 
             user.setEmailVerified(true);
             authRepository.save(user);
+            userDetailsCache.invalidate(email);
 
             // Cleanup Redis
             redisTemplate.delete(verificationKey);
             redisTemplate.delete(VERIFICATION_ATTEMPTS_PREFIX + email);
 
-            String accessToken = jwtUtil.generateToken(user);
-            String refreshToken = jwtUtil.generateRefreshToken(user);
+            // Issue tokens for the same principal type as login so the subject is the email
+            CustomUserDetailsImpl userDetails = new CustomUserDetailsImpl(user);
+            String accessToken = jwtUtil.generateToken(userDetails);
+            String refreshToken = jwtUtil.generateRefreshToken(userDetails);
 
             log.info("✅ Email verification successful for: {}", email);
 
@@ -295,18 +314,19 @@ public class AuthService {
             }
 
             String plainVerificationCode = emailService.generateVerificationCode();
-            String hashedVerificationCode = emailService.hashVerificationCode(plainVerificationCode);
+            String hashedVerificationCode = verificationCodeHasher.hash(
+                    VerificationCodeHasher.Purpose.EMAIL_VERIFICATION, email, plainVerificationCode
+            );
 
-            String verificationKey = VERIFICATION_CODE_PREFIX + email;
-            redisTemplate.opsForValue().set(
-                    verificationKey,
+            outboxService.recordCodeIssued(
+                    VerificationCodeHasher.Purpose.EMAIL_VERIFICATION,
+                    email,
+                    VERIFICATION_CODE_PREFIX + email,
                     hashedVerificationCode,
-                    verificationCodeExpiryMinutes,
-                    TimeUnit.MINUTES
+                    plainVerificationCode,
+                    Duration.ofMinutes(verificationCodeExpiryMinutes)
             );
 
-            emailService.sendVerificationCode(email, plainVerificationCode);
-
             log.info("📨 New verification code sent to: {}", email);
             log.debug("🔑 New verification code (DEV ONLY): {}", plainVerificationCode);
             log.debug("📊 Resend attempt {} of {}", attempts, maxResendAttempts);
@@ -359,16 +379,12 @@ public class AuthService {
 
             UserDetails userDetails = (UserDetails) authentication.getPrincipal();
 
-            // Invalidate all previous sessions
+            // Invalidate all previous sessions (one scripted Redis call)
             jwtUtil.invalidateAllUserSessions(userDetails.getUsername());
 
-            // Generate new tokens
-            String accessToken = jwtUtil.generateToken(userDetails);
-            String refreshToken = jwtUtil.generateRefreshToken(userDetails);
-
-            // Set tokens in cookies instead of returning them in the response
-            jwtUtil.generateToken(userDetails, response);
-            jwtUtil.generateRefreshToken(userDetails, response);
+            // Sign each token once; the same tokens go into the cookies and the response body
+            String accessToken = jwtUtil.generateToken(userDetails, response);
+            String refreshToken = jwtUtil.generateRefreshToken(userDetails, response);
 
             log.info("✅ Login successful for email: {}", request.getEmail());
 
@@ -382,7 +398,7 @@ public class AuthService {
         } catch (BadCredentialsException e) {
             log.warn("❌ Login failed: Invalid credentials for email: {}", request.getEmail());
             throw new UserAuthenticationException("Invalid credentials. Please check and try again.");
-        } catch (UserAuthenticationException e) {
+        } catch (UserAuthenticationException | PasswordHashingBusyException e) {
             throw e;
         } catch (Exception e) {
             log.error("💥 Unexpected error during login for email: {}", request.getEmail(), e);
@@ -431,38 +447,42 @@ public class AuthService {
         try {
             log.info("🔄 Starting token refresh process.");
 
-            // Check if the token is blacklisted
-            if (jwtUtil.isTokenBlacklisted(refreshToken)) {
-                log.warn("❌ Token refresh failed: Provided refresh token is blacklisted.");
-                throw new UserAuthenticationException(
-                        "Invalid refresh token. Please login again."
-                );
+            // Verify signature, expiry, blacklist and session in one pass
+            ValidatedToken validatedToken = jwtUtil.validateToken(refreshToken)
+                    .orElseThrow(() -> {
+                        log.warn("❌ Token refresh failed: Provided refresh token is invalid or revoked.");
+                        return new UserAuthenticationException(
+                                "Invalid refresh token. Please login again."
+                        );
+                    });
+
+            // An access token must not be exchangeable for a fresh pair
+            if (!validatedToken.isRefreshToken()) {
+                log.warn("❌ Token refresh failed: Provided token is not a refresh token.");
+                throw new UserAuthenticationException("Invalid refresh token. Please login again.");
             }
 
             // Extract the username from the token
-            String username = jwtUtil.extractUsername(refreshToken);
+            String username = validatedToken.getSubject();
             log.debug("🔍 Extracted username from refresh token: {}", username);
 
-            // Load user details
-            UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-
-            // Validate the token
-            if (!jwtUtil.validateToken(refreshToken, userDetails)) {
-                log.warn("❌ Token refresh failed: Invalid token for user: {}", username);
-                throw new UserAuthenticationException(
-                        "Invalid refresh token. Please login again."
-                );
-            }
+            // Load the user; the entity is needed for the response body
+            User user = authRepository.findByEmail(username)
+                    .orElseThrow(() -> {
+                        log.warn("❌ Token refresh failed: No account found for: {}", username);
+                        return new UserAuthenticationException(
+                                "Invalid refresh token. Please login again."
+                        );
+                    });
+            UserDetails userDetails = new CustomUserDetailsImpl(user);
 
-            // Invalidate the old refresh token
-            jwtUtil.invalidateToken(refreshToken);
+            // Invalidate the old refresh token (one pipelined Redis call)
+            jwtUtil.invalidateToken(validatedToken);
 
             // Generate new tokens
             String newAccessToken = jwtUtil.generateToken(userDetails);
             String newRefreshToken = jwtUtil.generateRefreshToken(userDetails);
 
-            User user = (User) userDetails;
-
             log.info("✅ Token refresh successful for user: {}", username);
 
             return AuthResponse.builder()
@@ -507,20 +527,20 @@ public class AuthService {
 
             // Generate and store reset token
             String plainResetToken = emailService.generateVerificationCode();
-            String hashedResetToken = emailService.hashVerificationCode(plainResetToken);
+            String hashedResetToken = verificationCodeHasher.hash(
+                    VerificationCodeHasher.Purpose.PASSWORD_RESET, email, plainResetToken
+            );
 
-            // Store reset token in Redis
-            String resetTokenKey = PASSWORD_RESET_TOKEN_PREFIX + email;
-            redisTemplate.opsForValue().set(
-                    resetTokenKey,
+            // Store the reset token and send the email after commit
+            outboxService.recordCodeIssued(
+                    VerificationCodeHasher.Purpose.PASSWORD_RESET,
+                    email,
+                    PASSWORD_RESET_TOKEN_PREFIX + email,
                     hashedResetToken,
-                    passwordResetTokenExpiryMinutes,
-                    TimeUnit.MINUTES
+                    plainResetToken,
+                    Duration.ofMinutes(passwordResetTokenExpiryMinutes)
             );
 
-            // Send reset email
-            emailService.sendPasswordResetToken(email, plainResetToken);
-
             log.info("📧 Password reset token sent to: {}", email);
             log.debug("🔑 Reset Token (DEV ONLY): {}", plainResetToken);
 
@@ -560,7 +580,19 @@ public class AuthService {
                 throw new UserAuthenticationException("Reset token has expired. Please request a new one.");
             }
 
-            if (!passwordEncoder.matches(resetToken, storedHashedToken)) {
+            VerificationCodeHasher.Result result = verificationCodeHasher.verify(
+                    VerificationCodeHasher.Purpose.PASSWORD_RESET,
+                    email,
+                    resetToken,
+                    storedHashedToken,
+                    resetTokenKey
+            );
+            if (result == VerificationCodeHasher.Result.TOO_MANY_ATTEMPTS) {
+                throw new UserAuthenticationException(
+                        "Too many invalid attempts. Please request a new reset token."
+                );
+            }
+            if (result != VerificationCodeHasher.Result.MATCHED) {
                 log.warn("❌ Invalid reset token used for email: {}", email);
                 throw new UserAuthenticationException("Invalid reset token.");
             }
@@ -568,10 +600,11 @@ public class AuthService {
             // Update password
             user.setPassword(passwordEncoder.encode(newPassword));
             authRepository.save(user);
+            userDetailsCache.invalidate(email);
 
             // Cleanup Redis and invalidate all sessions
             redisTemplate.delete(resetTokenKey);
-            jwtUtil.invalidateAllUserSessions(user.getUsername());
+            jwtUtil.invalidateAllUserSessions(user.getEmail());
 
             log.info("✅ Password reset successful for email: {}", email);
 
@@ -579,7 +612,7 @@ public class AuthService {
                     .message("Password has been reset successfully. You can now login with your new password.")
                     .build();
 
-        } catch (UserAuthenticationException e) {
+        } catch (UserAuthenticationException | PasswordHashingBusyException e) {
             throw e;
         } catch (Exception e) {
             log.error("💥 Error in reset password process", e);
@@ -612,9 +645,10 @@ public class AuthService {
             // Update password
             user.setPassword(passwordEncoder.encode(newPassword));
             authRepository.save(user);
+            userDetailsCache.invalidate(email);
 
             // Invalidate all sessions
-            jwtUtil.invalidateAllUserSessions(user.getUsername());
+            jwtUtil.invalidateAllUserSessions(user.getEmail());
 
             log.info("✅ Password change successful for email: {}", email);
 
@@ -622,7 +656,7 @@ public class AuthService {
                     .message("Password changed successfully. Please login with your new password.")
                     .build();
 
-        } catch (UserAuthenticationException e) {
+        } catch (UserAuthenticationException | PasswordHashingBusyException e) {
             throw e;
         } catch (Exception e) {
             log.error("💥 Error in password change process", e);
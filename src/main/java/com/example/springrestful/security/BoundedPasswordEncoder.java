@@ -0,0 +1,44 @@
+package com.example.springrestful.security;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.Optional;
+
+/**
+ * Runs the expensive {@code encode} and {@code matches} calls of the configured encoder on the
+ * {@link PasswordHashingExecutor}, so every caller (registration, login, password changes and
+ * rehash on login) shares one bound on concurrent hashing. The rehash on login uses
+ * {@link #tryEncode}, so it never fails a login that has already been authenticated.
+ */
+public class BoundedPasswordEncoder implements PasswordEncoder {
+    private final PasswordEncoder delegate;
+    private final PasswordHashingExecutor executor;
+
+    public BoundedPasswordEncoder(PasswordEncoder delegate, PasswordHashingExecutor executor) {
+        this.delegate = delegate;
+        this.executor = executor;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return executor.call(() -> delegate.encode(rawPassword));
+    }
+
+    /**
+     * Encodes on the pool if it has room, otherwise returns empty at once rather than failing.
+     */
+    public Optional<String> tryEncode(CharSequence rawPassword) {
+        return executor.tryCall(() -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return executor.call(() -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    // Only inspects the stored hash's prefix and cost, so it stays on the calling thread
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+}
@@ -1,58 +1,215 @@
 package com.example.springrestful.security;
 
 import com.example.springrestful.util.EmailUtil;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.redis.connection.stream.MapRecord;
 import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
 
+/**
+ * Drains the email streams with blocking consumer-group readers.
+ * <p>
+ * Each worker is a consumer in the mail type's group and blocks on {@code XREADGROUP} across
+ * all partitions, taking up to a batch per wakeup, so mail leaves within milliseconds of being
+ * enqueued and adding nodes adds consumers. A message is acknowledged only after it was sent;
+ * a failed send is handed back to {@link EmailQueueService} for retry.
+ */
 @Component
-@RequiredArgsConstructor
 @Slf4j
-public class EmailProcessor {
+public class EmailProcessor implements SmartLifecycle {
+    // Pause after a Redis failure so a broken connection doesn't spin the loop
+    private static final long ERROR_BACKOFF_MS = 1000;
+    private static final int RETRY_PROMOTION_LIMIT = 500;
+    private static final int RECLAIM_LIMIT = 100;
 
-    private final ObjectMapper objectMapper;
     private final EmailQueueService emailQueueService;
     private final EmailService emailService;
-    private final RedisTemplate<String, String> redisTemplate;
-    private static final String INVITATION_QUEUE_KEY = "invitation:queue";
+    private final int concurrency;
+    private final int batchSize;
+    private final Duration pollTimeout;
+    private final Duration visibilityTimeout;
+    // Consumer names are unique per process; a restarted node's old consumers are reclaimed
+    private final String nodeId = UUID.randomUUID().toString();
 
-    @Scheduled(fixedDelay = 1000)
-    public void processEmailQueue() {
+    private volatile boolean running;
+    private ExecutorService workers;
+
+    public EmailProcessor(
+            EmailQueueService emailQueueService,
+            EmailService emailService,
+            MeterRegistry meterRegistry,
+            @Value("${application.email-queue.concurrency}") int concurrency,
+            @Value("${application.email-queue.batch-size}") int batchSize,
+            @Value("${application.email-queue.poll-timeout-seconds}") long pollTimeoutSeconds,
+            @Value("${application.email-queue.visibility-timeout-seconds}") long visibilityTimeoutSeconds
+    ) {
+        this.emailQueueService = emailQueueService;
+        this.emailService = emailService;
+        this.concurrency = concurrency;
+        this.batchSize = batchSize;
+        this.pollTimeout = Duration.ofSeconds(pollTimeoutSeconds);
+        this.visibilityTimeout = Duration.ofSeconds(visibilityTimeoutSeconds);
+
+        for (MailQueue queue : MailQueue.values()) {
+            registerGauge(meterRegistry, "email.queue.depth", "Emails waiting to be sent",
+                    queue, emailQueueService::queueDepth);
+            registerGauge(meterRegistry, "email.stream.pending", "Emails delivered to a consumer but not yet acknowledged",
+                    queue, emailQueueService::pendingCount);
+            registerGauge(meterRegistry, "email.queue.retry", "Failed emails waiting for their next attempt",
+                    queue, emailQueueService::retryDepth);
+            registerGauge(meterRegistry, "email.queue.dead", "Emails that exhausted their retries",
+                    queue, emailQueueService::deadLetterDepth);
+        }
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        workers = Executors.newFixedThreadPool(concurrency * 2, new CustomizableThreadFactory("email-worker-"));
+        for (int i = 0; i < concurrency; i++) {
+            String consumerId = nodeId + ":" + i;
+            workers.submit(() -> consume(MailQueue.VERIFICATION, consumerId, this::processVerificationEmails));
+            workers.submit(() -> consume(MailQueue.INVITATION, consumerId, this::processInvitationEmails));
+        }
+        log.info("📬 Started {} email worker(s) per queue", concurrency);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        workers.shutdownNow();
         try {
-            // Process verification emails
-            Map<String, String> emailData = emailQueueService.dequeueEmail();
-            if (emailData != null) {
-                processVerificationEmail(emailData);
+            // Workers finish the message in hand; a blocked XREADGROUP returns within the poll timeout
+            workers.awaitTermination(pollTimeout.toMillis() + ERROR_BACKOFF_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Scheduled(fixedDelayString = "${application.email-queue.maintenance-interval-ms}")
+    public void promoteDueRetries() {
+        for (MailQueue queue : MailQueue.values()) {
+            try {
+                emailQueueService.promoteDueRetries(queue, RETRY_PROMOTION_LIMIT);
+            } catch (Exception e) {
+                EmailUtil.logEmailError("Error promoting email retries", queue.name(), e);
             }
+        }
+    }
 
-            // Process invitation emails
-            String invitationEmail = redisTemplate.opsForList().leftPop(INVITATION_QUEUE_KEY);
-            if (invitationEmail != null) {
-                processInvitationEmail(invitationEmail);
+    @Scheduled(fixedDelayString = "${application.email-queue.reaper-interval-ms}")
+    public void reclaimAbandoned() {
+        for (MailQueue queue : MailQueue.values()) {
+            try {
+                emailQueueService.reclaimAbandoned(queue, visibilityTimeout, RECLAIM_LIMIT);
+            } catch (Exception e) {
+                EmailUtil.logEmailError("Error reclaiming abandoned emails", queue.name(), e);
             }
-        } catch (Exception e) {
-            EmailUtil.logEmailError("Error processing email queue", "batch processing", e);
         }
     }
 
-    private void processVerificationEmail(Map<String, String> emailData) {
-        String toEmail = emailData.get("toEmail");
-        String verificationCode = emailData.get("verificationCode");
-        emailService.processAndSendEmail(toEmail, verificationCode);
+    private void consume(MailQueue queue, String consumerId, BatchHandler handler) {
+        boolean groupsReady = false;
+        while (running) {
+            try {
+                if (!groupsReady) {
+                    emailQueueService.ensureGroups(queue);
+                    groupsReady = true;
+                }
+                List<MapRecord<String, String, String>> batch =
+                        emailQueueService.take(queue, consumerId, pollTimeout, batchSize);
+                if (!batch.isEmpty()) {
+                    handle(queue, batch, handler);
+                }
+            } catch (Exception e) {
+                if (!running) {
+                    return;
+                }
+                EmailUtil.logEmailError("Error processing email queue", queue.groupName(), e);
+                try {
+                    Thread.sleep(ERROR_BACKOFF_MS);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
     }
 
-    private void processInvitationEmail(String invitationJson) {
+    private void handle(MailQueue queue, List<MapRecord<String, String, String>> batch, BatchHandler handler) {
+        List<Map<String, String>> emails = new ArrayList<>(batch.size());
+        for (MapRecord<String, String, String> record : batch) {
+            emails.add(record.getValue());
+        }
+
+        Map<Integer, Exception> failures;
         try {
-            Map<String, String> invitationData = objectMapper.readValue(invitationJson, Map.class);
-            // Process invitation email logic
-            // Implementation details...
+            failures = handler.send(emails);
         } catch (Exception e) {
-            EmailUtil.logEmailError("Error processing invitation email", "invitation processing", e);
+            failures = new HashMap<>();
+            for (int i = 0; i < batch.size(); i++) {
+                failures.put(i, e);
+            }
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            Exception failure = failures.get(i);
+            if (failure != null) {
+                emailQueueService.fail(queue, batch.get(i), failure);
+            } else {
+                emailQueueService.acknowledge(queue, batch.get(i));
+            }
         }
     }
-}
\ No newline at end of file
+
+    private void registerGauge(MeterRegistry meterRegistry, String name, String description,
+                               MailQueue queue, ToLongFunction<MailQueue> size) {
+        Gauge.builder(name, () -> {
+                    try {
+                        return size.applyAsLong(queue);
+                    } catch (Exception e) {
+                        return Double.NaN;
+                    }
+                })
+                .description(description)
+                .tag("queue", queue.name().toLowerCase())
+                .register(meterRegistry);
+    }
+
+    private Map<Integer, Exception> processVerificationEmails(List<Map<String, String>> emails) {
+        return emailService.sendVerificationEmails(emails);
+    }
+
+    private Map<Integer, Exception> processInvitationEmails(List<Map<String, String>> invitations) {
+        return emailService.sendInvitationEmails(invitations);
+    }
+
+    /**
+     * Sends a batch and reports the failure of each message not sent, by index.
+     */
+    @FunctionalInterface
+    private interface BatchHandler {
+        Map<Integer, Exception> send(List<Map<String, String>> emails);
+    }
+}
@@ -1,28 +1,178 @@
 package com.example.springrestful.security;
 
 import com.example.springrestful.util.EmailUtil;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessagesSummary;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.StreamInfo;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 
+/**
+ * At-least-once email queue on Redis Streams.
+ * <p>
+ * Each mail type is spread over {@code partitions} streams and consumed by one consumer group,
+ * so every node adds consumers and Redis hands each entry to exactly one of them. An entry
+ * stays in the group's pending list until the mail is sent, then is acknowledged and deleted,
+ * which keeps the streams holding only undelivered work. Failures go to a retry set with
+ * exponential backoff and, after {@code max-attempts}, to a dead-letter list. Entries left
+ * pending by a crashed consumer are reclaimed with {@code XAUTOCLAIM} and re-added, each
+ * reclaim counting as an attempt.
+ */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class EmailQueueService {
-    private static final String EMAIL_QUEUE_KEY = "email:queue";
-    private static final String EMAIL_PROCESSING_KEY = "email:processing";
+    public static final String ID_FIELD = "id";
+    public static final String ATTEMPTS_FIELD = "attempts";
+    private static final String LAST_ERROR_FIELD = "lastError";
+    private static final String DEAD_AT_FIELD = "deadAt";
+    private static final String RECLAIMER = "reclaimer";
+
+    private static final RedisScript<Long> ACK_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('XACK', KEYS[1], ARGV[1], ARGV[2]) " +
+                    "return redis.call('XDEL', KEYS[1], ARGV[2])",
+            Long.class
+    );
+
+    private static final RedisScript<Long> RETRY_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('XACK', KEYS[1], ARGV[1], ARGV[2]) " +
+                    "redis.call('XDEL', KEYS[1], ARGV[2]) " +
+                    "return redis.call('ZADD', KEYS[2], ARGV[4], ARGV[3])",
+            Long.class
+    );
+
+    private static final RedisScript<Long> DEAD_LETTER_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('XACK', KEYS[1], ARGV[1], ARGV[2]) " +
+                    "redis.call('XDEL', KEYS[1], ARGV[2]) " +
+                    "return redis.call('RPUSH', KEYS[2], ARGV[3])",
+            Long.class
+    );
+
+    // Re-adds a JSON-encoded message to one of the partition streams in KEYS[2..]
+    private static final String XADD_JSON =
+            "local function xaddJson(index, message) " +
+                    "  local fields = {} " +
+                    "  for field, value in pairs(cjson.decode(message)) do " +
+                    "    fields[#fields + 1] = field " +
+                    "    fields[#fields + 1] = tostring(value) " +
+                    "  end " +
+                    "  redis.call('XADD', KEYS[2 + (index % (#KEYS - 1))], '*', unpack(fields)) " +
+                    "end ";
+
+    private static final RedisScript<Long> PROMOTE_DUE_SCRIPT = new DefaultRedisScript<>(
+            XADD_JSON +
+                    "local due = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, tonumber(ARGV[2])) " +
+                    "for index, message in ipairs(due) do " +
+                    "  redis.call('ZREM', KEYS[1], message) " +
+                    "  xaddJson(index, message) " +
+                    "end " +
+                    "return #due",
+            Long.class
+    );
+
+    private static final RedisScript<Long> REPLAY_SCRIPT = new DefaultRedisScript<>(
+            XADD_JSON +
+                    "local count = 0 " +
+                    "for index = 1, tonumber(ARGV[1]) do " +
+                    "  local message = redis.call('LPOP', KEYS[1]) " +
+                    "  if not message then break end " +
+                    "  xaddJson(index, message) " +
+                    "  count = count + 1 " +
+                    "end " +
+                    "return count",
+            Long.class
+    );
+
+    // Takes over entries pending longer than the visibility timeout. Each takeover counts as an
+    // attempt, so a message that keeps killing its consumer is dead-lettered after ARGV[5]
+    // rather than re-added forever; the rest are re-added as new entries any consumer can pick up
+    private static final RedisScript<List> RECLAIM_SCRIPT = new DefaultRedisScript<>(
+            "local claimed = redis.call('XAUTOCLAIM', KEYS[1], ARGV[1], ARGV[2], ARGV[3], '0-0', 'COUNT', ARGV[4]) " +
+                    "local requeued = 0 " +
+                    "local deadLettered = 0 " +
+                    "for _, entry in ipairs(claimed[2]) do " +
+                    "  if type(entry) == 'table' then " +
+                    "    if entry[2] then " +
+                    "      local data = {} " +
+                    "      for i = 1, #entry[2], 2 do " +
+                    "        data[entry[2][i]] = entry[2][i + 1] " +
+                    "      end " +
+                    "      local attempts = (tonumber(data['" + ATTEMPTS_FIELD + "']) or 0) + 1 " +
+                    "      if attempts >= tonumber(ARGV[5]) then " +
+                    "        data['" + ATTEMPTS_FIELD + "'] = '0' " +
+                    "        data['" + LAST_ERROR_FIELD + "'] = 'Abandoned by consumer' " +
+                    "        data['" + DEAD_AT_FIELD + "'] = ARGV[6] " +
+                    "        redis.call('RPUSH', KEYS[2], cjson.encode(data)) " +
+                    "        deadLettered = deadLettered + 1 " +
+                    "      else " +
+                    "        data['" + ATTEMPTS_FIELD + "'] = tostring(attempts) " +
+                    "        local fields = {} " +
+                    "        for field, value in pairs(data) do " +
+                    "          fields[#fields + 1] = field " +
+                    "          fields[#fields + 1] = value " +
+                    "        end " +
+                    "        redis.call('XADD', KEYS[1], '*', unpack(fields)) " +
+                    "        requeued = requeued + 1 " +
+                    "      end " +
+                    "    end " +
+                    "    redis.call('XACK', KEYS[1], ARGV[1], entry[1]) " +
+                    "    redis.call('XDEL', KEYS[1], entry[1]) " +
+                    "  end " +
+                    "end " +
+                    "return {requeued, deadLettered}",
+            List.class
+    );
+
     private final RedisTemplate<String, String> redisTemplate;
+    private final StreamOperations<String, String, String> streams;
     private final ObjectMapper objectMapper;
+    private final int partitions;
+    private final int maxAttempts;
+    private final long retryBaseDelayMillis;
+    private final long retryMaxDelayMillis;
+
+    public EmailQueueService(
+            RedisTemplate<String, String> redisTemplate,
+            ObjectMapper objectMapper,
+            @Value("${application.email-queue.partitions}") int partitions,
+            @Value("${application.email-queue.max-attempts}") int maxAttempts,
+            @Value("${application.email-queue.retry-base-delay-ms}") long retryBaseDelayMillis,
+            @Value("${application.email-queue.retry-max-delay-ms}") long retryMaxDelayMillis
+    ) {
+        this.redisTemplate = redisTemplate;
+        this.streams = redisTemplate.opsForStream();
+        this.objectMapper = objectMapper;
+        this.partitions = partitions;
+        this.maxAttempts = maxAttempts;
+        this.retryBaseDelayMillis = retryBaseDelayMillis;
+        this.retryMaxDelayMillis = retryMaxDelayMillis;
+    }
 
     public void queueEmail(String toEmail, String verificationCode) {
         try {
-            Map<String, String> emailData = EmailUtil.createEmailQueueData(toEmail, verificationCode);
-            String emailJson = objectMapper.writeValueAsString(emailData);
-            redisTemplate.opsForList().rightPush(EMAIL_QUEUE_KEY, emailJson);
+            enqueue(MailQueue.VERIFICATION, EmailUtil.createEmailQueueData(toEmail, verificationCode));
             EmailUtil.logEmailSuccess("Email queued successfully", toEmail);
         } catch (Exception e) {
             EmailUtil.logEmailError("Failed to queue email", toEmail, e);
@@ -30,16 +180,259 @@ public class EmailQueueService {
         }
     }
 
-    public Map<String, String> dequeueEmail() {
+    public void enqueue(MailQueue queue, Map<String, String> payload) {
+        enqueue(redisTemplate, queue, payload);
+    }
+
+    /**
+     * Enqueues through the given operations, so callers can batch the {@code XADD} into a
+     * pipeline alongside their own writes.
+     */
+    public void enqueue(RedisOperations<String, String> operations, MailQueue queue, Map<String, String> payload) {
+        Map<String, String> message = new HashMap<>(payload);
+        message.put(ID_FIELD, UUID.randomUUID().toString());
+        message.put(ATTEMPTS_FIELD, "0");
+        int partition = ThreadLocalRandom.current().nextInt(partitions);
+        operations.opsForStream().add(MapRecord.create(queue.streamKey(partition), message));
+    }
+
+    /**
+     * Creates the consumer group on every partition if missing. Starting from the beginning
+     * of the stream picks up anything enqueued before the group existed. Keys still under
+     * their pre-hash-tag names are moved first.
+     */
+    public void ensureGroups(MailQueue queue) {
+        moveLegacyKeys(queue);
+        for (int partition = 0; partition < partitions; partition++) {
+            try {
+                streams.createGroup(queue.streamKey(partition), ReadOffset.from("0-0"), queue.groupName());
+            } catch (DataAccessException e) {
+                if (!String.valueOf(e.getMostSpecificCause().getMessage()).contains("BUSYGROUP")) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Blocks up to {@code timeout} for new entries on any partition and returns at most
+     * {@code maxMessages} of them, now pending for {@code consumerId}.
+     */
+    @SuppressWarnings("unchecked")
+    public List<MapRecord<String, String, String>> take(
+            MailQueue queue, String consumerId, Duration timeout, int maxMessages) {
+        StreamOffset<String>[] offsets = new StreamOffset[partitions];
+        for (int partition = 0; partition < partitions; partition++) {
+            offsets[partition] = StreamOffset.create(queue.streamKey(partition), ReadOffset.lastConsumed());
+        }
+        List<MapRecord<String, String, String>> records = streams.read(
+                Consumer.from(queue.groupName(), consumerId),
+                StreamReadOptions.empty().count(maxMessages).block(timeout),
+                offsets
+        );
+        return records == null ? Collections.emptyList() : records;
+    }
+
+    public void acknowledge(MailQueue queue, MapRecord<String, String, String> record) {
+        redisTemplate.execute(
+                ACK_SCRIPT,
+                List.of(record.getStream()),
+                queue.groupName(),
+                record.getId().getValue()
+        );
+    }
+
+    /**
+     * Schedules a retry with exponential backoff, or dead-letters the message once it has
+     * failed {@code max-attempts} times.
+     */
+    public void fail(MailQueue queue, MapRecord<String, String, String> record, Exception cause) {
+        Map<String, String> data = new HashMap<>(record.getValue());
+        int attempts = parseAttempts(data.get(ATTEMPTS_FIELD)) + 1;
+        data.put(LAST_ERROR_FIELD, String.valueOf(cause.getMessage()));
         try {
-            String emailJson = redisTemplate.opsForList().leftPop(EMAIL_QUEUE_KEY);
-            if (emailJson != null) {
-                return objectMapper.readValue(emailJson, Map.class);
+            if (attempts >= maxAttempts) {
+                // Replayed messages start with a fresh retry budget
+                data.put(ATTEMPTS_FIELD, "0");
+                data.put(DEAD_AT_FIELD, Instant.now().toString());
+                redisTemplate.execute(
+                        DEAD_LETTER_SCRIPT,
+                        List.of(record.getStream(), queue.deadLetterKey()),
+                        queue.groupName(),
+                        record.getId().getValue(),
+                        objectMapper.writeValueAsString(data)
+                );
+                log.error("☠️ Email {} dead-lettered after {} attempts", data.get(ID_FIELD), attempts);
+                return;
             }
-            return null;
+
+            data.put(ATTEMPTS_FIELD, String.valueOf(attempts));
+            long delay = Math.min(retryMaxDelayMillis, retryBaseDelayMillis << Math.min(attempts - 1, 30));
+            redisTemplate.execute(
+                    RETRY_SCRIPT,
+                    List.of(record.getStream(), queue.retryKey()),
+                    queue.groupName(),
+                    record.getId().getValue(),
+                    objectMapper.writeValueAsString(data),
+                    String.valueOf(System.currentTimeMillis() + delay)
+            );
+            log.warn("⚠️ Email {} failed (attempt {}), retrying in {} ms", data.get(ID_FIELD), attempts, delay);
+        } catch (JsonProcessingException e) {
+            log.error("Failed to reschedule email {}", data.get(ID_FIELD), e);
+        }
+    }
+
+    /** Moves retries whose backoff has elapsed back onto the streams. */
+    public long promoteDueRetries(MailQueue queue, int limit) {
+        Long promoted = redisTemplate.execute(
+                PROMOTE_DUE_SCRIPT,
+                keysWithStreams(queue, queue.retryKey()),
+                String.valueOf(System.currentTimeMillis()),
+                String.valueOf(limit)
+        );
+        return promoted == null ? 0 : promoted;
+    }
+
+    /**
+     * Re-adds entries that have been pending longer than the visibility timeout, i.e. whose
+     * consumer died or stalled mid-send, and forgets consumers that have been idle as long
+     * with nothing pending. A reclaim counts as a failed attempt, so entries past
+     * {@code max-attempts} are dead-lettered instead. Returns the number of entries taken over.
+     */
+    public long reclaimAbandoned(MailQueue queue, Duration visibilityTimeout, int limit) {
+        long reclaimed = 0;
+        for (int partition = 0; partition < partitions; partition++) {
+            String streamKey = queue.streamKey(partition);
+            List<?> counts = redisTemplate.execute(
+                    RECLAIM_SCRIPT,
+                    List.of(streamKey, queue.deadLetterKey()),
+                    queue.groupName(),
+                    RECLAIMER,
+                    String.valueOf(visibilityTimeout.toMillis()),
+                    String.valueOf(limit),
+                    String.valueOf(maxAttempts),
+                    Instant.now().toString()
+            );
+            long requeued = count(counts, 0);
+            long deadLettered = count(counts, 1);
+            if (requeued > 0) {
+                log.warn("♻️ Re-queued {} abandoned email(s) from {}", requeued, streamKey);
+            }
+            if (deadLettered > 0) {
+                log.error("☠️ Dead-lettered {} email(s) from {} abandoned {} times", deadLettered, streamKey, maxAttempts);
+            }
+            reclaimed += requeued + deadLettered;
+
+            StreamInfo.XInfoConsumers consumers = streams.consumers(streamKey, queue.groupName());
+            consumers.forEach(consumer -> {
+                if (consumer.pendingCount() == 0 && consumer.idleTimeMs() > visibilityTimeout.toMillis()) {
+                    streams.deleteConsumer(streamKey, Consumer.from(queue.groupName(), consumer.consumerName()));
+                }
+            });
+        }
+        return reclaimed;
+    }
+
+    public List<Map<String, String>> deadLetters(MailQueue queue, int offset, int limit) {
+        List<String> messages = redisTemplate.opsForList().range(queue.deadLetterKey(), offset, offset + limit - 1);
+        if (messages == null) {
+            return Collections.emptyList();
+        }
+        List<Map<String, String>> result = new ArrayList<>(messages.size());
+        for (String message : messages) {
+            Map<String, String> data = parseEmail(message);
+            result.add(data != null ? data : Map.of("raw", message));
+        }
+        return result;
+    }
+
+    /** Moves up to {@code count} dead letters, oldest first, back onto the streams. */
+    public long replayDeadLetters(MailQueue queue, int count) {
+        Long replayed = redisTemplate.execute(
+                REPLAY_SCRIPT,
+                keysWithStreams(queue, queue.deadLetterKey()),
+                String.valueOf(count)
+        );
+        return replayed == null ? 0 : replayed;
+    }
+
+    public Map<String, String> parseEmail(String emailJson) {
+        try {
+            return objectMapper.readValue(emailJson, Map.class);
         } catch (Exception e) {
-            log.error("Failed to dequeue email", e);
+            log.error("Failed to parse queued email", e);
             return null;
         }
     }
-}
\ No newline at end of file
+
+    /** Entries in the streams not yet delivered to any consumer. */
+    public long queueDepth(MailQueue queue) {
+        long length = 0;
+        for (int partition = 0; partition < partitions; partition++) {
+            Long size = streams.size(queue.streamKey(partition));
+            length += size == null ? 0 : size;
+        }
+        // Acknowledged entries are deleted, so whatever is not pending is still waiting
+        return Math.max(0, length - pendingCount(queue));
+    }
+
+    /** Entries delivered to a consumer and not yet acknowledged (the pending entries list). */
+    public long pendingCount(MailQueue queue) {
+        long pending = 0;
+        for (int partition = 0; partition < partitions; partition++) {
+            PendingMessagesSummary summary = streams.pending(queue.streamKey(partition), queue.groupName());
+            pending += summary == null ? 0 : summary.getTotalPendingMessages();
+        }
+        return pending;
+    }
+
+    public long retryDepth(MailQueue queue) {
+        Long size = redisTemplate.opsForZSet().zCard(queue.retryKey());
+        return size == null ? 0 : size;
+    }
+
+    public long deadLetterDepth(MailQueue queue) {
+        Long size = redisTemplate.opsForList().size(queue.deadLetterKey());
+        return size == null ? 0 : size;
+    }
+
+    // Renaming keeps a stream's consumer group and pending entries
+    private void moveLegacyKeys(MailQueue queue) {
+        List<String> keys = keysWithStreams(queue, queue.retryKey());
+        keys.add(queue.deadLetterKey());
+        for (String key : keys) {
+            String legacyKey = queue.legacyKey(key);
+            if (!Boolean.TRUE.equals(redisTemplate.hasKey(legacyKey))) {
+                continue;
+            }
+            if (Boolean.TRUE.equals(redisTemplate.renameIfAbsent(legacyKey, key))) {
+                log.info("🔀 Moved {} to {}", legacyKey, key);
+            } else {
+                log.warn("⚠️ Both {} and {} exist; entries left in {} are no longer processed", legacyKey, key, legacyKey);
+            }
+        }
+    }
+
+    private List<String> keysWithStreams(MailQueue queue, String firstKey) {
+        List<String> keys = new ArrayList<>(partitions + 1);
+        keys.add(firstKey);
+        for (int partition = 0; partition < partitions; partition++) {
+            keys.add(queue.streamKey(partition));
+        }
+        return keys;
+    }
+
+    private static long count(List<?> counts, int index) {
+        return counts != null && counts.size() > index && counts.get(index) instanceof Number number
+                ? number.longValue()
+                : 0;
+    }
+
+    private static int parseAttempts(String attempts) {
+        try {
+            return attempts == null ? 0 : Integer.parseInt(attempts);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
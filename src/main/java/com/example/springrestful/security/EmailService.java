@@ -1,46 +1,33 @@
 package com.example.springrestful.security;
 
-import com.example.springrestful.entity.EmployeeInvitation;
 import com.example.springrestful.exception.EmailSendingException;
-import com.example.springrestful.exception.InvalidInvitationException;
 import com.example.springrestful.util.EmailUtil;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.mail.MessagingException;
 import jakarta.mail.internet.MimeMessage;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
-import org.springframework.scheduling.annotation.Async;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
-import org.thymeleaf.TemplateEngine;
-import org.thymeleaf.context.Context;
 
 import java.nio.charset.StandardCharsets;
-import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class EmailService {
 
-    private static final String INVITATION_CACHE_PREFIX = "invitation:";
-    private static final String INVITATION_QUEUE_KEY = "invitation:queue";
-    private static final Duration INVITATION_CACHE_DURATION = Duration.ofDays(7);
-
-    private final ObjectMapper objectMapper;
-    private final PasswordEncoder passwordEncoder;
     private final JavaMailSender mailSender;
-    private final EmailQueueService emailQueueService;
-    private final TemplateEngine templateEngine;
-    private final RedisTemplate<String, String> redisTemplate;
+    private final EmailTemplateRenderer templateRenderer;
 
     @Value("${spring.mail.username}")
     private String fromEmail;
@@ -48,6 +35,9 @@ public class EmailService {
     @Value("${application.invitation.base-url}")
     private String invitationBaseUrl;
 
+    @Value("${verification.code.expiry.minutes}")
+    private long verificationCodeExpiryMinutes;
+
     @Value("${jwt.password-reset-token-expiry-minutes}")
     private int passwordResetTokenExpiryMinutes;
 
@@ -55,177 +45,114 @@ public class EmailService {
         return EmailUtil.generateVerificationCode();
     }
 
-    public String hashVerificationCode(String plainCode) {
-        return EmailUtil.hashVerificationCode(plainCode, passwordEncoder);
-    }
-
-    public void sendVerificationCode(String toEmail, String verificationCode) {
-        try {
-            if (toEmail == null || toEmail.trim().isEmpty()) {
-                throw new IllegalArgumentException("Recipient email cannot be null or empty");
-            }
-
-            emailQueueService.queueEmail(toEmail, verificationCode);
-            EmailUtil.logEmailSuccess("Verification email queued", toEmail);
-
-        } catch (Exception e) {
-            EmailUtil.logEmailError("Failed to queue verification email", toEmail, e);
-            throw new RuntimeException("Failed to queue verification email: " + e.getMessage(), e);
-        }
-    }
-
-    @Async
-    protected void processAndSendEmail(String toEmail, String verificationCode) {
-        try {
-            SimpleMailMessage message = EmailUtil.createVerificationEmail(fromEmail, toEmail, verificationCode);
-            mailSender.send(message);
-            EmailUtil.logEmailSuccess("Email sent successfully", toEmail);
-
-        } catch (Exception e) {
-            EmailUtil.logEmailError("Failed to send email", toEmail, e);
-            handleEmailFailure(toEmail, verificationCode);
-        }
-    }
-
-    public Optional<Map<Object, Object>> getInvitationData(String token) {
-        String cacheKey = INVITATION_CACHE_PREFIX + token;
-        Map<Object, Object> invitationData = redisTemplate.opsForHash().entries(cacheKey);
-        return invitationData.isEmpty() ? Optional.empty() : Optional.of(invitationData);
-    }
-
-    private void handleEmailFailure(String toEmail, String verificationCode) {
-        log.warn("⚠️ Implementing retry logic for failed email to: {}", toEmail);
-        // Add to dead letter queue or retry queue
-    }
-
     /**
-     * Sends password reset token to user's email
+     * Renders and sends a batch of queued verification and password reset emails in one
+     * {@code send} call, so they share a pooled SMTP connection.
+     *
+     * @return the failure of each message that was not sent, keyed by its index in the batch
      */
-    public void sendPasswordResetToken(String toEmail, String resetToken) {
-        try {
-            if (toEmail == null || toEmail.trim().isEmpty()) {
-                throw new IllegalArgumentException("Recipient email cannot be null or empty");
+    public Map<Integer, Exception> sendVerificationEmails(List<Map<String, String>> emails) {
+        List<CompletableFuture<String>> bodies = new ArrayList<>(emails.size());
+        List<String> subjects = new ArrayList<>(emails.size());
+        for (Map<String, String> email : emails) {
+            boolean passwordReset = VerificationCodeHasher.Purpose.PASSWORD_RESET.name().equals(email.get("purpose"));
+            subjects.add(passwordReset ? "Password Reset Request" : "Email Verification Code");
+            // A malformed entry fails only its own message, at its own index
+            try {
+                String code = email.get("verificationCode");
+                if (code == null) {
+                    throw new IllegalArgumentException("Queued email has no verification code");
+                }
+                Map<String, Object> variables = new HashMap<>();
+                variables.put("code", code);
+                variables.put("expiryMinutes", passwordReset ? passwordResetTokenExpiryMinutes : verificationCodeExpiryMinutes);
+                bodies.add(templateRenderer.renderAsync(
+                        passwordReset ? EmailTemplateRenderer.PASSWORD_RESET : EmailTemplateRenderer.VERIFICATION,
+                        variables
+                ));
+            } catch (RuntimeException e) {
+                bodies.add(CompletableFuture.failedFuture(e));
             }
-
-            SimpleMailMessage message = new SimpleMailMessage();
-            message.setFrom(fromEmail);
-            message.setTo(toEmail);
-            message.setSubject("Password Reset Request");
-            message.setText(String.format(
-                    "Hello,\n\n" +
-                            "We received a request to reset your password. " +
-                            "Your password reset code is: %s\n\n" +
-                            "This code will expire in %d minutes.\n\n" +
-                            "If you didn't request this, please ignore this email.\n\n" +
-                            "Best regards,\n" +
-                            "Your Application Team",
-                    resetToken,
-                    passwordResetTokenExpiryMinutes
-            ));
-
-            emailQueueService.queueEmail(toEmail, resetToken);
-            EmailUtil.logEmailSuccess("Password reset email queued", toEmail);
-
-        } catch (Exception e) {
-            EmailUtil.logEmailError("Failed to queue password reset email", toEmail, e);
-            throw new EmailSendingException("Failed to send password reset email", e);
         }
+        return sendRendered(emails, "toEmail", subjects, bodies, "Email");
     }
 
     /**
-     * Sends invitation process
+     * Renders and sends a batch of queued invitation emails in one {@code send} call.
+     *
+     * @return the failure of each message that was not sent, keyed by its index in the batch
      */
-//    public void sendInvitationEmail(EmployeeInvitation invitation) {
-//        try {
-//            cacheInvitationData(invitation);
-//
-//            MimeMessage message = mailSender.createMimeMessage();
-//            MimeMessageHelper helper = new MimeMessageHelper(message, StandardCharsets.UTF_8.name());
-//
-//            String emailContent = generateInvitationEmailContent(invitation);
-//
-//            helper.setTo(invitation.getEmail());
-//            helper.setSubject("Invitation to join " + invitation.getOrganization().getName());
-//            helper.setText(emailContent, true);
-//            helper.setFrom(fromEmail);
-//
-//            queueInvitationEmail(invitation.getEmail(), emailContent);
-//            EmailUtil.logEmailSuccess("Invitation email queued", invitation.getEmail());
-//
-//        } catch (MessagingException e) {
-//            EmailUtil.logEmailError("Failed to prepare invitation email", invitation.getEmail(), e);
-//            throw new EmailSendingException("Failed to send invitation email", e);
-//        }
-//    }
-
-    public void sendInvitationEmail(EmployeeInvitation invitation) {
-        try {
-            log.debug("Preparing to send invitation email to: {}", invitation.getEmail());
-
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, StandardCharsets.UTF_8.name());
-
-            String emailContent = generateInvitationEmailContent(invitation);
-
-            helper.setTo(invitation.getEmail());
-            helper.setSubject("Invitation to join " + invitation.getOrganization().getName());
-            helper.setText(emailContent, true);
-            helper.setFrom(fromEmail);
-
-            log.debug("Attempting to send email...");
-            mailSender.send(message);
-            log.info("✅ Invitation email sent successfully to: {}", invitation.getEmail());
-
-        } catch (MessagingException e) {
-            log.error("❌ Failed to send invitation email to: {} - Error: {}",
-                    invitation.getEmail(), e.getMessage(), e);
-            throw new EmailSendingException("Failed to send invitation email: " + e.getMessage(), e);
-        } catch (Exception e) {
-            log.error("❌ Unexpected error sending invitation email to: {} - Error: {}",
-                    invitation.getEmail(), e.getMessage(), e);
-            throw new EmailSendingException("Unexpected error sending invitation email: " + e.getMessage(), e);
+    public Map<Integer, Exception> sendInvitationEmails(List<Map<String, String>> invitations) {
+        List<Map<String, Object>> variables = new ArrayList<>(invitations.size());
+        List<String> subjects = new ArrayList<>(invitations.size());
+        for (Map<String, String> invitation : invitations) {
+            Map<String, Object> entry = new HashMap<>();
+            String organizationName = invitation.getOrDefault("organizationName", "");
+            entry.put("organizationName", organizationName);
+            entry.put("invitationLink", generateInvitationLink(invitation.get("invitationToken")));
+            entry.put("expiryDate", invitation.get("expiryDate"));
+            variables.add(entry);
+            subjects.add(organizationName.isBlank()
+                    ? "You have been invited to join an organization"
+                    : "Invitation to join " + organizationName);
         }
+        List<CompletableFuture<String>> bodies = templateRenderer.renderAll(EmailTemplateRenderer.INVITATION, variables);
+        return sendRendered(invitations, "email", subjects, bodies, "Invitation email");
     }
 
-    private String generateInvitationEmailContent(EmployeeInvitation invitation) {
-        Context context = new Context();
-        Map<String, Object> variables = new HashMap<>();
-        variables.put("organizationName", invitation.getOrganization().getName());
-        variables.put("invitationLink", generateInvitationLink(invitation.getInvitationToken()));
-        variables.put("expiryDate", invitation.getTokenExpiry().toLocalDate().toString());
-        context.setVariables(variables);
-
-        return templateEngine.process("invitation-email", context);
-    }
-
-    private void cacheInvitationData(EmployeeInvitation invitation) {
-        try {
-            String cacheKey = INVITATION_CACHE_PREFIX + invitation.getInvitationToken();
-            Map<String, String> invitationData = new HashMap<>();
-            invitationData.put("email", invitation.getEmail());
-            invitationData.put("organizationId", invitation.getOrganization().getId().toString());
-            invitationData.put("status", invitation.getStatus().toString());
-            invitationData.put("expiryDate", invitation.getTokenExpiry().toString());
-
-            redisTemplate.opsForHash().putAll(cacheKey, invitationData);
-            redisTemplate.expire(cacheKey, INVITATION_CACHE_DURATION);
+    private Map<Integer, Exception> sendRendered(
+            List<Map<String, String>> emails,
+            String recipientField,
+            List<String> subjects,
+            List<CompletableFuture<String>> bodies,
+            String label
+    ) {
+        Map<Integer, Exception> failures = new HashMap<>();
+        List<MimeMessage> messages = new ArrayList<>(emails.size());
+        List<Integer> messageIndexes = new ArrayList<>(emails.size());
+
+        for (int i = 0; i < emails.size(); i++) {
+            try {
+                MimeMessage message = mailSender.createMimeMessage();
+                MimeMessageHelper helper = new MimeMessageHelper(message, StandardCharsets.UTF_8.name());
+                helper.setTo(emails.get(i).get(recipientField));
+                helper.setSubject(subjects.get(i));
+                helper.setText(bodies.get(i).join(), true);
+                helper.setFrom(fromEmail);
+                messages.add(message);
+                messageIndexes.add(i);
+            } catch (CompletionException e) {
+                failures.put(i, e.getCause() instanceof Exception cause ? cause : e);
+            } catch (Exception e) {
+                failures.put(i, e);
+            }
+        }
 
-            log.debug("🗄️ Invitation data cached with key: {}", cacheKey);
-        } catch (Exception e) {
-            EmailUtil.logEmailError("Failed to cache invitation data", invitation.getEmail(), e);
-            throw new InvalidInvitationException("Failed to process invitation" + e);
+        if (!messages.isEmpty()) {
+            try {
+                mailSender.send(messages.toArray(new MimeMessage[0]));
+            } catch (MailSendException e) {
+                Map<Object, Exception> failedMessages = e.getFailedMessages();
+                for (int j = 0; j < messages.size(); j++) {
+                    Exception failure = failedMessages.isEmpty() ? e : failedMessages.get(messages.get(j));
+                    if (failure != null) {
+                        failures.put(messageIndexes.get(j), failure);
+                    }
+                }
+            } catch (MailException e) {
+                messageIndexes.forEach(index -> failures.put(index, e));
+            }
         }
-    }
 
-    private void queueInvitationEmail(String email, String content) {
-        try {
-            Map<String, String> emailData = EmailUtil.createInvitationQueueData(email, content);
-            redisTemplate.opsForList().rightPush(INVITATION_QUEUE_KEY,
-                    objectMapper.writeValueAsString(emailData));
-        } catch (Exception e) {
-            EmailUtil.logEmailError("Failed to queue invitation email", email, e);
-            throw new EmailSendingException("Failed to queue invitation email", e);
+        for (int i = 0; i < emails.size(); i++) {
+            String toEmail = emails.get(i).get(recipientField);
+            if (failures.containsKey(i)) {
+                EmailUtil.logEmailError("Failed to send " + label.toLowerCase(), toEmail, failures.get(i));
+            } else {
+                EmailUtil.logEmailSuccess(label + " sent", toEmail);
+            }
         }
+        return failures;
     }
 
     private String generateInvitationLink(String token) {
@@ -237,12 +164,10 @@ public class EmailService {
             MimeMessage message = mailSender.createMimeMessage();
             MimeMessageHelper helper = new MimeMessageHelper(message, StandardCharsets.UTF_8.name());
 
-            Context context = new Context();
-            Map<String, Object> variables = new HashMap<>();
-            variables.put("email", toEmail);
-            context.setVariables(variables);
-
-            String emailContent = templateEngine.process("invitation-cancellation-email", context);
+            String emailContent = templateRenderer.render(
+                    EmailTemplateRenderer.INVITATION_CANCELLATION,
+                    Map.of("email", toEmail)
+            );
 
             helper.setTo(toEmail);
             helper.setSubject("Invitation Cancelled");
@@ -257,4 +182,4 @@ public class EmailService {
             throw new EmailSendingException("Failed to send cancellation email", e);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,99 @@
+package com.example.springrestful.security;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.Context;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Renders every outgoing email.
+ * <p>
+ * Templates are parsed once at startup into the Thymeleaf template cache, so a render only
+ * evaluates expressions. Each thread reuses one {@link Context}, and batches are rendered in
+ * parallel on a small dedicated pool.
+ */
+@Component
+@Slf4j
+public class EmailTemplateRenderer {
+    public static final String VERIFICATION = "verification-email";
+    public static final String PASSWORD_RESET = "password-reset-email";
+    public static final String INVITATION = "invitation-email";
+    public static final String INVITATION_CANCELLATION = "invitation-cancellation-email";
+
+    private static final List<String> TEMPLATES = List.of(VERIFICATION, PASSWORD_RESET, INVITATION, INVITATION_CANCELLATION);
+
+    private final ITemplateEngine templateEngine;
+    private final ExecutorService renderPool;
+    private final ThreadLocal<Context> contexts = ThreadLocal.withInitial(() -> new Context(Locale.ENGLISH));
+
+    public EmailTemplateRenderer(
+            ITemplateEngine templateEngine,
+            @Value("${application.mail.render-threads}") int renderThreads
+    ) {
+        this.templateEngine = templateEngine;
+        this.renderPool = Executors.newFixedThreadPool(renderThreads, new CustomizableThreadFactory("email-render-"));
+    }
+
+    /**
+     * Parses every template up front, so a missing or broken template fails startup instead of
+     * the first send, and the first emails don't pay for parsing.
+     */
+    @PostConstruct
+    public void warmUp() {
+        for (String template : TEMPLATES) {
+            render(template, Map.of());
+        }
+        log.info("📝 Pre-parsed {} email templates", TEMPLATES.size());
+    }
+
+    public String render(String template, Map<String, ?> variables) {
+        Context context = contexts.get();
+        try {
+            context.setVariables(castVariables(variables));
+            return templateEngine.process(template, context);
+        } finally {
+            // Don't keep the last recipient's data reachable from the thread
+            context.clearVariables();
+        }
+    }
+
+    /**
+     * Renders on the render pool; submit a whole batch before joining to render it in parallel.
+     */
+    public CompletableFuture<String> renderAsync(String template, Map<String, ?> variables) {
+        return CompletableFuture.supplyAsync(() -> render(template, variables), renderPool);
+    }
+
+    /**
+     * Renders one template per entry in parallel; a failed render fails only its own future.
+     */
+    public List<CompletableFuture<String>> renderAll(String template, List<? extends Map<String, ?>> variables) {
+        List<CompletableFuture<String>> rendered = new ArrayList<>(variables.size());
+        for (Map<String, ?> entry : variables) {
+            rendered.add(renderAsync(template, entry));
+        }
+        return rendered;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> castVariables(Map<String, ?> variables) {
+        return (Map<String, Object>) variables;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        renderPool.shutdown();
+    }
+}
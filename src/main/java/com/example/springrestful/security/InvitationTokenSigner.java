@@ -0,0 +1,143 @@
+package com.example.springrestful.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Issues self-validating invitation tokens.
+ * <p>
+ * A token is the invitation id, organization id and expiry followed by an HMAC-SHA256 over
+ * them, base64url-encoded. A forged, truncated or expired token is rejected from the token
+ * alone, so scanners hitting the public accept endpoint never reach Redis or the database.
+ * The id makes every token unique without a lookup.
+ * <p>
+ * The secret is its own key, never the JWT secret, so leaking one does not let anyone forge the
+ * other. Unsigned UUID tokens from before signing are accepted only until
+ * {@code legacy-tokens-accepted-until}.
+ */
+@Component
+public class InvitationTokenSigner {
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final byte VERSION = 1;
+    // version + id + organization id + expiry epoch seconds
+    private static final int CLAIMS_LENGTH = 1 + Long.BYTES * 3;
+    private static final int MAC_LENGTH = 32;
+    private static final int TOKEN_LENGTH = CLAIMS_LENGTH + MAC_LENGTH;
+    private static final Pattern LEGACY_TOKEN = Pattern.compile(
+            "^[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}$");
+
+    public record Claims(long invitationId, long organizationId, LocalDateTime expiry) {
+        public boolean isExpired() {
+            return expiry.isBefore(LocalDateTime.now());
+        }
+    }
+
+    private final ThreadLocal<Mac> mac;
+    private final Instant legacyTokensAcceptedUntil;
+
+    public InvitationTokenSigner(
+            @Value("${application.invitation.token-secret}") String secret,
+            @Value("${jwt.secret}") String jwtSecret,
+            @Value("${application.invitation.legacy-tokens-accepted-until:}") String legacyTokensAcceptedUntil
+    ) {
+        if (secret == null || secret.isBlank()) {
+            throw new IllegalStateException("application.invitation.token-secret must be set");
+        }
+        if (secret.equals(jwtSecret)) {
+            throw new IllegalStateException("application.invitation.token-secret must differ from jwt.secret");
+        }
+        this.legacyTokensAcceptedUntil = legacyTokensAcceptedUntil.isBlank()
+                ? Instant.MIN
+                : Instant.parse(legacyTokensAcceptedUntil);
+
+        SecretKeySpec key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM);
+        // Mac is not thread-safe; one initialised instance per thread avoids re-keying per call
+        this.mac = ThreadLocal.withInitial(() -> {
+            try {
+                Mac instance = Mac.getInstance(HMAC_ALGORITHM);
+                instance.init(key);
+                return instance;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HMAC-SHA256 is not available", e);
+            }
+        });
+    }
+
+    /**
+     * Expiry is signed at second precision; store the same truncated value on the invitation.
+     */
+    public String sign(long invitationId, long organizationId, LocalDateTime expiry) {
+        ByteBuffer token = ByteBuffer.allocate(TOKEN_LENGTH);
+        token.put(VERSION)
+                .putLong(invitationId)
+                .putLong(organizationId)
+                .putLong(expiry.atZone(ZoneId.systemDefault()).toEpochSecond());
+        token.put(mac(token.array()));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token.array());
+    }
+
+    /**
+     * @return the claims of a genuine token, expired or not, or empty if it was not issued by us
+     */
+    public Optional<Claims> parse(String token) {
+        if (token == null || token.length() != encodedLength()) {
+            return Optional.empty();
+        }
+        byte[] decoded;
+        try {
+            decoded = Base64.getUrlDecoder().decode(token);
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+        if (decoded.length != TOKEN_LENGTH || decoded[0] != VERSION) {
+            return Optional.empty();
+        }
+
+        byte[] expectedMac = mac(decoded);
+        byte[] actualMac = Arrays.copyOfRange(decoded, CLAIMS_LENGTH, TOKEN_LENGTH);
+        if (!MessageDigest.isEqual(expectedMac, actualMac)) {
+            return Optional.empty();
+        }
+
+        ByteBuffer claims = ByteBuffer.wrap(decoded, 1, CLAIMS_LENGTH - 1);
+        long invitationId = claims.getLong();
+        long organizationId = claims.getLong();
+        LocalDateTime expiry = LocalDateTime.ofInstant(Instant.ofEpochSecond(claims.getLong()), ZoneId.systemDefault());
+        return Optional.of(new Claims(invitationId, organizationId, expiry));
+    }
+
+    /**
+     * Random UUID tokens issued before signing was introduced are still looked up until the
+     * configured deadline, after which they are rejected like any other unsigned token. They
+     * expire within the invitation lifetime, so once the deadline has passed this can go.
+     */
+    public boolean acceptsLegacyToken(String token) {
+        return Instant.now().isBefore(legacyTokensAcceptedUntil)
+                && token != null
+                && LEGACY_TOKEN.matcher(token).matches();
+    }
+
+    private byte[] mac(byte[] token) {
+        Mac instance = mac.get();
+        instance.update(token, 0, CLAIMS_LENGTH);
+        return instance.doFinal();
+    }
+
+    private static int encodedLength() {
+        return (TOKEN_LENGTH * 8 + 5) / 6;
+    }
+}
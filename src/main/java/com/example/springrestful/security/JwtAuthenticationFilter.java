@@ -1,11 +1,15 @@
 package com.example.springrestful.security;
 
+import com.example.springrestful.service.impl.CustomUserDetailsImpl;
 import com.example.springrestful.util.JwtUtil;
+import com.example.springrestful.util.PublicPathMatcher;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpMethod;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -16,8 +20,7 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.List;
+import java.util.Optional;
 
 @Component
 @RequiredArgsConstructor
@@ -25,13 +28,13 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private final JwtUtil jwtUtil;
     private final UserDetailsService userDetailsService;
 
-    private static final List<String> PUBLIC_PATHS = Arrays.asList(
-            "/api/v1/auth/login",
-            "/api/v1/auth/register",
-            "/api/v1/auth/verify-email",
-            "/api/v1/auth/forgot-password",
-            "/api/v1/auth/reset-password",
-            "/api/v1/auth/resend-verification"
+    @Value("${jwt.stateless-auth.enabled}")
+    private boolean statelessAuthEnabled;
+
+    // Compiled once; anonymous and static routes never need token processing
+    private static final PublicPathMatcher SKIP_AUTHENTICATION = new PublicPathMatcher(
+            PublicEndpoints.ANONYMOUS,
+            PublicEndpoints.STATIC_RESOURCES
     );
 
     @Override
@@ -41,43 +44,38 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             @NonNull FilterChain filterChain
     ) throws ServletException, IOException {
         try {
-            if (shouldSkipAuthentication(request)) {
-                filterChain.doFilter(request, response);
-                return;
-            }
-
             // Extract token from either Authorization header or Cookie
             final String jwt = jwtUtil.extractTokenFromRequest(request);
 
             if (jwt != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                // Check if token is blacklisted
-                if (jwtUtil.isTokenBlacklisted(jwt)) {
-                    logger.warn("Attempted to use blacklisted token");
+                // One signature verification; revocation and session checks are usually served locally
+                Optional<ValidatedToken> validatedToken = jwtUtil.validateToken(jwt);
+
+                if (validatedToken.isEmpty()) {
+                    // Token is malformed, expired, blacklisted or no longer in an active session
                     jwtUtil.clearAuthenticationCookies(response);
                     response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
                     return;
                 }
 
-                final String username = jwtUtil.extractUsername(jwt);
-
-                if (username != null) {
-                    UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-
-                    if (jwtUtil.validateToken(jwt, userDetails)) {
-                        UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-                                userDetails,
-                                null,
-                                userDetails.getAuthorities()
-                        );
-                        authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                        SecurityContextHolder.getContext().setAuthentication(authToken);
-                    } else {
-                        // Token validation failed
-                        jwtUtil.clearAuthenticationCookies(response);
+                if (validatedToken.get().isRefreshToken()) {
+                    // The refresh endpoint validates it itself; it is never a bearer credential
+                    if (!PublicEndpoints.REFRESH_TOKEN.equals(pathWithinApplication(request))) {
                         response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
                         return;
                     }
+                    filterChain.doFilter(request, response);
+                    return;
                 }
+
+                UserDetails userDetails = resolveUserDetails(validatedToken.get());
+                UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
+                        userDetails,
+                        null,
+                        userDetails.getAuthorities()
+                );
+                authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                SecurityContextHolder.getContext().setAuthentication(authToken);
             }
         } catch (Exception e) {
             logger.error("Error occurred in JWT filter: " + e.getMessage(), e);
@@ -88,8 +86,26 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
-    private boolean shouldSkipAuthentication(HttpServletRequest request) {
-        String path = request.getRequestURI();
-        return PUBLIC_PATHS.stream().anyMatch(path::contains);
+    private UserDetails resolveUserDetails(ValidatedToken validatedToken) {
+        if (statelessAuthEnabled && validatedToken.hasCurrentIdentityClaims()) {
+            return CustomUserDetailsImpl.fromValidatedToken(validatedToken);
+        }
+        // Stateful mode, or a token issued before the current identity claims: load from the database
+        return userDetailsService.loadUserByUsername(validatedToken.getSubject());
+    }
+
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        // CORS preflights carry no credentials
+        if (HttpMethod.OPTIONS.matches(request.getMethod())) {
+            return true;
+        }
+        return SKIP_AUTHENTICATION.matches(pathWithinApplication(request));
+    }
+
+    private static String pathWithinApplication(HttpServletRequest request) {
+        String uri = request.getRequestURI();
+        String contextPath = request.getContextPath();
+        return contextPath.isEmpty() ? uri : uri.substring(contextPath.length());
     }
 }
\ No newline at end of file
@@ -0,0 +1,240 @@
+package com.example.springrestful.security;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.KeyUse;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.SignatureException;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.security.KeyPair;
+import java.security.interfaces.ECPublicKey;
+import java.text.ParseException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Owns the keys used to sign and verify JWTs.
+ * <p>
+ * With {@code jwt.signing.algorithm=HS256} tokens are signed with {@code jwt.secret}. With
+ * {@code ES256} every node signs with its own P-256 key pair, rotated on a schedule, and
+ * publishes the public half to Redis under its {@code kid}. All nodes, and downstream services
+ * via {@code /.well-known/jwks.json}, verify locally against those public keys. HS256 tokens
+ * are then only accepted until {@code jwt.signing.hs256-accepted-until}, so the shared secret
+ * stops being able to mint tokens once the migration window closes.
+ * <p>
+ * Verification keys live in an immutable map that is swapped as a whole on refresh, so
+ * lookups by {@code kid} take no locks.
+ */
+@Component
+@Slf4j
+public class JwtKeyManager {
+    private static final String JWKS_KEY = "jwt:jwks";
+    private static final String JWKS_EXPIRY_KEY = "jwt:jwks:expiry";
+    private static final String HMAC_KEY_ID = "hs256";
+    private static final long MIN_ON_DEMAND_REFRESH_INTERVAL_MS = 1000;
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final SignatureAlgorithm algorithm;
+    private final Key hmacKey;
+    private final Instant hmacAcceptedUntil;
+    private final long keyLifetimeMillis;
+
+    private volatile SigningKey currentSigningKey;
+    private volatile ECKey currentPublicJwk;
+    private volatile Map<String, Key> verificationKeys;
+    private volatile String jwksJson;
+    private volatile String jwksEtag;
+    private volatile long lastRefreshMillis;
+
+    @Getter
+    @AllArgsConstructor
+    public static class SigningKey {
+        private final String keyId;
+        private final Key key;
+        private final SignatureAlgorithm algorithm;
+    }
+
+    public JwtKeyManager(
+            RedisTemplate<String, String> redisTemplate,
+            @Value("${jwt.secret}") String secret,
+            @Value("${jwt.signing.algorithm}") String algorithm,
+            @Value("${jwt.signing.rotation-interval-ms}") long rotationIntervalMillis,
+            @Value("${jwt.refresh-token.expiration}") long refreshTokenExpiration,
+            @Value("${jwt.signing.hs256-accepted-until:}") String hs256AcceptedUntil
+    ) {
+        this.redisTemplate = redisTemplate;
+        this.algorithm = SignatureAlgorithm.forName(algorithm);
+        if (this.algorithm != SignatureAlgorithm.HS256 && this.algorithm != SignatureAlgorithm.ES256) {
+            throw new IllegalArgumentException("Unsupported jwt.signing.algorithm: " + algorithm);
+        }
+        this.hmacKey = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        this.hmacAcceptedUntil = hs256AcceptedUntil.isBlank() ? Instant.MIN : Instant.parse(hs256AcceptedUntil);
+        // A public key must outlive every token it signed
+        this.keyLifetimeMillis = rotationIntervalMillis + refreshTokenExpiration;
+
+        this.verificationKeys = Map.of();
+        this.jwksJson = new JWKSet().toString();
+        this.jwksEtag = etagOf(jwksJson);
+
+        if (this.algorithm == SignatureAlgorithm.HS256) {
+            this.currentSigningKey = new SigningKey(HMAC_KEY_ID, hmacKey, SignatureAlgorithm.HS256);
+        } else {
+            rotate();
+            if (acceptsHmacTokens()) {
+                log.info("🔑 HS256 tokens are accepted until {}", hmacAcceptedUntil);
+            }
+        }
+    }
+
+    public SigningKey getCurrentSigningKey() {
+        return currentSigningKey;
+    }
+
+    public String getJwksJson() {
+        return jwksJson;
+    }
+
+    public String getJwksEtag() {
+        return jwksEtag;
+    }
+
+    /**
+     * Resolves the verification key for a token header. An unknown {@code kid} triggers at
+     * most one refresh from Redis per second, to pick up keys another node just rotated in.
+     */
+    public Key resolveVerificationKey(String keyId) {
+        String id = keyId == null ? HMAC_KEY_ID : keyId;
+        if (HMAC_KEY_ID.equals(id)) {
+            if (algorithm == SignatureAlgorithm.HS256 || acceptsHmacTokens()) {
+                return hmacKey;
+            }
+            throw new SignatureException("HS256 tokens are no longer accepted");
+        }
+
+        Key key = verificationKeys.get(id);
+        if (key == null && algorithm != SignatureAlgorithm.HS256
+                && System.currentTimeMillis() - lastRefreshMillis > MIN_ON_DEMAND_REFRESH_INTERVAL_MS) {
+            refreshVerificationKeys();
+            key = verificationKeys.get(id);
+        }
+        if (key == null) {
+            throw new SignatureException("Unknown JWT signing key id: " + id);
+        }
+        return key;
+    }
+
+    /**
+     * Generates a fresh key pair and starts signing with it. Keys signed by the previous
+     * pair remain verifiable until they expire from Redis.
+     */
+    @Scheduled(
+            fixedDelayString = "${jwt.signing.rotation-interval-ms}",
+            initialDelayString = "${jwt.signing.rotation-interval-ms}"
+    )
+    public synchronized void rotate() {
+        if (algorithm == SignatureAlgorithm.HS256) {
+            return;
+        }
+
+        KeyPair keyPair = Keys.keyPairFor(SignatureAlgorithm.ES256);
+        String keyId = UUID.randomUUID().toString();
+        currentPublicJwk = new ECKey.Builder(Curve.P_256, (ECPublicKey) keyPair.getPublic())
+                .keyID(keyId)
+                .keyUse(KeyUse.SIGNATURE)
+                .algorithm(JWSAlgorithm.ES256)
+                .build();
+        currentSigningKey = new SigningKey(keyId, keyPair.getPrivate(), SignatureAlgorithm.ES256);
+
+        log.info("🔑 Rotated JWT signing key, new kid: {}", keyId);
+        refreshVerificationKeys();
+    }
+
+    /**
+     * Re-publishes this node's public key, drops expired keys and reloads every node's
+     * public key from Redis.
+     */
+    @Scheduled(fixedDelayString = "${jwt.signing.jwks-refresh-interval-ms}")
+    public synchronized void refreshVerificationKeys() {
+        if (algorithm == SignatureAlgorithm.HS256) {
+            return;
+        }
+        lastRefreshMillis = System.currentTimeMillis();
+
+        Map<String, Key> keys = new HashMap<>();
+        List<JWK> publicKeys = new ArrayList<>();
+
+        ECKey ownKey = currentPublicJwk;
+        keys.put(ownKey.getKeyID(), toPublicKey(ownKey));
+        publicKeys.add(ownKey);
+
+        try {
+            long now = System.currentTimeMillis();
+            redisTemplate.opsForHash().putIfAbsent(JWKS_KEY, ownKey.getKeyID(), ownKey.toJSONString());
+            redisTemplate.opsForZSet().addIfAbsent(JWKS_EXPIRY_KEY, ownKey.getKeyID(), now + keyLifetimeMillis);
+
+            Set<String> expired = redisTemplate.opsForZSet().rangeByScore(JWKS_EXPIRY_KEY, 0, now);
+            if (expired != null && !expired.isEmpty()) {
+                redisTemplate.opsForHash().delete(JWKS_KEY, expired.toArray());
+                redisTemplate.opsForZSet().remove(JWKS_EXPIRY_KEY, expired.toArray());
+            }
+
+            Map<Object, Object> published = redisTemplate.opsForHash().entries(JWKS_KEY);
+            for (Map.Entry<Object, Object> entry : published.entrySet()) {
+                String keyId = (String) entry.getKey();
+                if (keys.containsKey(keyId)) {
+                    continue;
+                }
+                ECKey jwk = ECKey.parse((String) entry.getValue());
+                keys.put(keyId, jwk.toECPublicKey());
+                publicKeys.add(jwk);
+            }
+        } catch (ParseException | JOSEException e) {
+            log.error("💥 Malformed JWK found in Redis", e);
+        } catch (Exception e) {
+            // Keep verifying with the keys already known
+            log.error("💥 Failed to refresh JWT verification keys", e);
+        }
+
+        String json = new JWKSet(publicKeys).toString();
+        verificationKeys = Map.copyOf(keys);
+        jwksJson = json;
+        jwksEtag = etagOf(json);
+    }
+
+    // In ES256 mode, HS256 tokens issued before the switch are honoured until the configured cutoff
+    private boolean acceptsHmacTokens() {
+        return Instant.now().isBefore(hmacAcceptedUntil);
+    }
+
+    private static Key toPublicKey(ECKey jwk) {
+        try {
+            return jwk.toECPublicKey();
+        } catch (JOSEException e) {
+            throw new IllegalStateException("Invalid local JWT signing key", e);
+        }
+    }
+
+    private static String etagOf(String json) {
+        return "\"" + DigestUtils.md5DigestAsHex(json.getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.springrestful.security;
+
+import java.util.Locale;
+
+/**
+ * Redis keys of one email queue. Messages are spread over {@code partitions} streams read
+ * by a single consumer group per mail type; failed messages wait in the retry set and end up
+ * in the dead-letter list once retries are exhausted.
+ * <p>
+ * Every key of a queue carries the hash tag {@code {email:<queue>}}, so on Redis Cluster they
+ * all hash to one slot and the multi-key scripts and reads in {@link EmailQueueService} are
+ * allowed. The partitions therefore spread consumers, not load across cluster nodes.
+ */
+public enum MailQueue {
+    VERIFICATION("email"),
+    INVITATION("invitation");
+
+    private final String prefix;
+    private final String hashTag;
+
+    MailQueue(String prefix) {
+        this.prefix = prefix;
+        this.hashTag = "{email:" + name().toLowerCase(Locale.ROOT) + "}";
+    }
+
+    public String streamKey(int partition) {
+        return hashTag + ":stream:" + partition;
+    }
+
+    public String groupName() {
+        return prefix + "-senders";
+    }
+
+    /** Sorted set of failed messages scored by when they are due again. */
+    public String retryKey() {
+        return hashTag + ":retry";
+    }
+
+    public String deadLetterKey() {
+        return hashTag + ":dead";
+    }
+
+    /** The name {@code key} had before the keys were hash tagged. */
+    String legacyKey(String key) {
+        return prefix + key.substring(hashTag.length());
+    }
+}
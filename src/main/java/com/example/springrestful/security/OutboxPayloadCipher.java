@@ -0,0 +1,92 @@
+package com.example.springrestful.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Encrypts secrets that have to pass through the outbox table, such as a verification code
+ * waiting to be emailed, so database backups and replicas never hold them in the clear.
+ * <p>
+ * AES-256-GCM with a random nonce per value. The associated data (the recipient) is
+ * authenticated but not stored, so a ciphertext copied onto another row fails to decrypt.
+ */
+@Component
+public class OutboxPayloadCipher {
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int NONCE_LENGTH = 12;
+    private static final int TAG_BITS = 128;
+
+    private final SecretKeySpec key;
+    private final SecureRandom random = new SecureRandom();
+
+    public OutboxPayloadCipher(
+            @Value("${application.outbox.payload-key}") String secret,
+            @Value("${jwt.secret}") String jwtSecret
+    ) {
+        if (secret == null || secret.isBlank()) {
+            throw new IllegalStateException("application.outbox.payload-key must be set");
+        }
+        if (secret.equals(jwtSecret)) {
+            throw new IllegalStateException("application.outbox.payload-key must differ from jwt.secret");
+        }
+        try {
+            // Any length of secret becomes a 256-bit key
+            byte[] keyBytes = MessageDigest.getInstance("SHA-256").digest(secret.getBytes(StandardCharsets.UTF_8));
+            this.key = new SecretKeySpec(keyBytes, "AES");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    public String encrypt(String plaintext, String associatedData) {
+        byte[] nonce = new byte[NONCE_LENGTH];
+        random.nextBytes(nonce);
+        try {
+            Cipher cipher = cipher(Cipher.ENCRYPT_MODE, nonce, associatedData);
+            byte[] ciphertext = cipher.doFinal(plaintext.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(ByteBuffer.allocate(NONCE_LENGTH + ciphertext.length)
+                    .put(nonce)
+                    .put(ciphertext)
+                    .array());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to encrypt outbox payload", e);
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if the value was tampered with, encrypted under another
+     *                                  key, or for different associated data
+     */
+    public String decrypt(String encrypted, String associatedData) {
+        try {
+            byte[] bytes = Base64.getDecoder().decode(encrypted);
+            if (bytes.length <= NONCE_LENGTH) {
+                throw new IllegalArgumentException("Encrypted outbox value is too short");
+            }
+            Cipher cipher = cipher(Cipher.DECRYPT_MODE, Arrays.copyOf(bytes, NONCE_LENGTH), associatedData);
+            byte[] plaintext = cipher.doFinal(bytes, NONCE_LENGTH, bytes.length - NONCE_LENGTH);
+            return new String(plaintext, StandardCharsets.UTF_8);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalArgumentException("Cannot decrypt outbox value", e);
+        }
+    }
+
+    private Cipher cipher(int mode, byte[] nonce, String associatedData) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+        cipher.init(mode, key, new GCMParameterSpec(TAG_BITS, nonce));
+        cipher.updateAAD(associatedData.getBytes(StandardCharsets.UTF_8));
+        return cipher;
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.springrestful.security;
+
+import com.example.springrestful.exception.PasswordHashingBusyException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Bounded pool that runs every password hash and check, via {@link BoundedPasswordEncoder}.
+ * <p>
+ * Only the encoder calls are handed over; the rest of the request, including database work and
+ * response writes, stays on the request thread. Capping concurrent hashing near the core count
+ * stops a login storm from starving every other endpoint of CPU. When both the workers and the
+ * queue are full, new work is refused at once with {@link PasswordHashingBusyException}, which
+ * the API maps to 429. So at most {@code threads + queue-capacity} request threads are ever
+ * parked waiting on a hash; the rest of the server's request threads stay free for other
+ * endpoints.
+ */
+@Component
+@Slf4j
+public class PasswordHashingExecutor {
+
+    private final ThreadPoolExecutor executor;
+    private final Counter rejectedCounter;
+
+    public PasswordHashingExecutor(
+            MeterRegistry meterRegistry,
+            @Value("${application.password-hashing.threads}") int threads,
+            @Value("${application.password-hashing.queue-capacity}") int queueCapacity
+    ) {
+        this.executor = new ThreadPoolExecutor(
+                threads,
+                threads,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new CustomizableThreadFactory("password-hashing-"),
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+
+        Gauge.builder("auth.password_hashing.queue.depth", executor, e -> e.getQueue().size())
+                .description("Auth requests waiting for a password hashing thread")
+                .register(meterRegistry);
+        Gauge.builder("auth.password_hashing.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Password hashing threads currently busy")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("auth.password_hashing.rejected")
+                .description("Auth requests refused because the hashing pool was saturated")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs the task on the pool and waits for its result. Must not be called from a pool thread.
+     */
+    public <T> T call(Supplier<T> task) {
+        CompletableFuture<T> result = submit(task);
+        if (result == null) {
+            rejectedCounter.increment();
+            log.warn("🚦 Password hashing pool saturated, rejecting request");
+            throw new PasswordHashingBusyException(
+                    "The server is handling too many sign-in requests. Please try again shortly."
+            );
+        }
+        return await(result);
+    }
+
+    /**
+     * Like {@link #call}, but returns empty instead of failing when the pool is saturated, for
+     * work that can be skipped and retried later.
+     */
+    public <T> Optional<T> tryCall(Supplier<T> task) {
+        CompletableFuture<T> result = submit(task);
+        return result == null ? Optional.empty() : Optional.of(await(result));
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, executor);
+        } catch (RejectedExecutionException e) {
+            return null;
+        }
+    }
+
+    private static <T> T await(CompletableFuture<T> result) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            // Surface the encoder's own exception rather than the wrapper
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.springrestful.security;
+
+/**
+ * Single source of truth for routes that do not require an authenticated user.
+ * Used by both {@link com.example.springrestful.config.SecurityConfig} and
+ * {@link JwtAuthenticationFilter}.
+ */
+public final class PublicEndpoints {
+
+    // Permitted anonymously; the JWT filter does not run for these
+    public static final String[] ANONYMOUS = {
+            "/api/v1/auth/login",
+            "/api/v1/auth/register",
+            "/api/v1/auth/verify-email",
+            "/api/v1/auth/forgot-password",
+            "/api/v1/auth/reset-password",
+            "/api/v1/auth/resend-verification",
+            "/.well-known/jwks.json"
+    };
+
+    // Static content; the JWT filter does not run for these either
+    public static final String[] STATIC_RESOURCES = {
+            "/favicon.ico",
+            "/static/**",
+            "/webjars/**"
+    };
+
+    // Permitted without a token, but a token that is present is still validated (logout, refresh, me)
+    public static final String[] OPTIONAL_AUTHENTICATION = {
+            "/api/v1/auth/**"
+    };
+
+    // The only route that accepts a refresh token; everywhere else it is rejected as a credential
+    public static final String REFRESH_TOKEN = "/api/v1/auth/refresh-token";
+
+    private PublicEndpoints() {
+        // Constants only
+    }
+}
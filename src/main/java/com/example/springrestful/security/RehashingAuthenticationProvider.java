@@ -0,0 +1,47 @@
+package com.example.springrestful.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
+import org.springframework.security.core.userdetails.UserDetailsService;
+
+import java.util.Optional;
+
+/**
+ * {@link DaoAuthenticationProvider} that rehashes outdated passwords on successful login only
+ * when the hashing pool has room. When it is saturated the upgrade is skipped and retried on a
+ * later login, instead of answering 429 to a user whose password has already been checked.
+ */
+@Slf4j
+public class RehashingAuthenticationProvider extends DaoAuthenticationProvider {
+    private final BoundedPasswordEncoder passwordEncoder;
+    private final UserDetailsPasswordService userDetailsPasswordService;
+
+    public RehashingAuthenticationProvider(
+            UserDetailsService userDetailsService,
+            BoundedPasswordEncoder passwordEncoder,
+            UserDetailsPasswordService userDetailsPasswordService
+    ) {
+        super(passwordEncoder);
+        setUserDetailsService(userDetailsService);
+        // Deliberately not passed to the superclass, whose upgrade would block on the pool
+        this.passwordEncoder = passwordEncoder;
+        this.userDetailsPasswordService = userDetailsPasswordService;
+    }
+
+    @Override
+    protected Authentication createSuccessAuthentication(
+            Object principal, Authentication authentication, UserDetails user) {
+        if (passwordEncoder.upgradeEncoding(user.getPassword())) {
+            Optional<String> rehashed = passwordEncoder.tryEncode(authentication.getCredentials().toString());
+            if (rehashed.isPresent()) {
+                user = userDetailsPasswordService.updatePassword(user, rehashed.get());
+            } else {
+                log.info("🚦 Password hashing pool saturated, deferring hash upgrade for: {}", user.getUsername());
+            }
+        }
+        return super.createSuccessAuthentication(principal, authentication, user);
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.springrestful.security;
+
+import com.example.springrestful.util.BloomFilter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks revoked token ids (jti).
+ * <p>
+ * Redis stays the source of truth: a short {@code blacklist prefix + jti} key per revoked
+ * token, plus a sorted set of all revoked ids scored by expiry. Each node keeps a Bloom
+ * filter of that set so the common case, a token that was never revoked, is answered
+ * without a Redis round-trip. Only probable hits are confirmed against Redis.
+ */
+@Component
+@Slf4j
+public class RevokedTokenRegistry implements MessageListener {
+    private static final String REVOKED_TOKEN_IDS_KEY = "revoked_token_ids";
+    private static final String REVOCATION_CHANNEL = "revoked_token_ids:added";
+
+    @Value("${jwt.redis.prefix.blacklist}")
+    private String blacklistPrefix;
+
+    @Value("${jwt.revocation.expected-insertions}")
+    private int expectedInsertions;
+
+    @Value("${jwt.revocation.false-positive-rate}")
+    private double falsePositiveRate;
+
+    private final RedisTemplate<String, String> redisTemplate;
+
+    // Revocations received while a rebuild is in progress, replayed into the new filter
+    private final Set<String> recentRevocations = ConcurrentHashMap.newKeySet();
+    private volatile BloomFilter revokedIds;
+
+    public RevokedTokenRegistry(RedisTemplate<String, String> redisTemplate,
+                                RedisMessageListenerContainer listenerContainer) {
+        this.redisTemplate = redisTemplate;
+        listenerContainer.addMessageListener(this, new ChannelTopic(REVOCATION_CHANNEL));
+    }
+
+    public boolean isRevoked(String tokenId) {
+        BloomFilter filter = revokedIds;
+        // Until the first sync completes every lookup goes to Redis
+        if (filter != null && !filter.mightContain(tokenId)) {
+            return false;
+        }
+        return Boolean.TRUE.toString().equals(redisTemplate.opsForValue().get(blacklistPrefix + tokenId));
+    }
+
+    public void revoke(String tokenId, long remainingMillis) {
+        if (remainingMillis <= 0) {
+            return;
+        }
+        long expiresAt = System.currentTimeMillis() + remainingMillis;
+
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                ops.opsForValue().set(blacklistPrefix + tokenId, "true", remainingMillis, TimeUnit.MILLISECONDS);
+                ops.opsForZSet().add(REVOKED_TOKEN_IDS_KEY, tokenId, expiresAt);
+                ops.convertAndSend(REVOCATION_CHANNEL, tokenId);
+                return null;
+            }
+        });
+        addLocally(tokenId);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        addLocally(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+
+    private synchronized void addLocally(String tokenId) {
+        recentRevocations.add(tokenId);
+        BloomFilter filter = revokedIds;
+        if (filter != null) {
+            filter.put(tokenId);
+        }
+    }
+
+    /**
+     * Drops expired ids from Redis and rebuilds the local filter from what is left.
+     */
+    @Scheduled(fixedDelayString = "${jwt.revocation.sync-interval-ms}")
+    public void synchronize() {
+        try {
+            long now = System.currentTimeMillis();
+            redisTemplate.opsForZSet().removeRangeByScore(REVOKED_TOKEN_IDS_KEY, 0, now);
+            Set<String> ids = redisTemplate.opsForZSet().range(REVOKED_TOKEN_IDS_KEY, 0, -1);
+
+            BloomFilter rebuilt = new BloomFilter(Math.max(expectedInsertions, ids == null ? 0 : ids.size()), falsePositiveRate);
+            if (ids != null) {
+                ids.forEach(rebuilt::put);
+            }
+
+            synchronized (this) {
+                recentRevocations.forEach(rebuilt::put);
+                recentRevocations.clear();
+                revokedIds = rebuilt;
+            }
+            log.debug("🔄 Revoked token filter rebuilt with {} ids", ids == null ? 0 : ids.size());
+        } catch (Exception e) {
+            // Keep serving from the previous filter; pub/sub still delivers new revocations
+            log.error("💥 Failed to synchronize revoked token ids", e);
+        }
+    }
+}
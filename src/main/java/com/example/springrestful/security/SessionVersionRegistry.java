@@ -0,0 +1,97 @@
+package com.example.springrestful.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Per-user session version used to revoke every token of a user at once.
+ * <p>
+ * Each issued token carries the version current at issuance. Revoking all sessions is a
+ * single {@code INCR}; tokens holding an older version stop validating. Versions are
+ * cached locally and kept fresh over pub/sub, so validation is usually an integer compare.
+ */
+@Component
+public class SessionVersionRegistry implements MessageListener {
+    private static final String VERSION_CHANGED_CHANNEL = "user_session_version:changed";
+    private static final char MESSAGE_SEPARATOR = '\n';
+
+    // Bumps the version and notifies other nodes in one round-trip
+    private static final RedisScript<Long> REVOKE_ALL_SCRIPT = new DefaultRedisScript<>(
+            "local version = redis.call('INCR', KEYS[1]) " +
+                    "redis.call('PUBLISH', ARGV[1], ARGV[2] .. '\\n' .. version) " +
+                    "return version",
+            Long.class
+    );
+
+    @Value("${jwt.redis.prefix.session-version}")
+    private String sessionVersionPrefix;
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final Cache<String, Long> versions;
+
+    public SessionVersionRegistry(
+            RedisTemplate<String, String> redisTemplate,
+            RedisMessageListenerContainer listenerContainer,
+            @Value("${jwt.session-version.cache-max-size}") long maxSize,
+            @Value("${jwt.session-version.cache-ttl-seconds}") long ttlSeconds
+    ) {
+        this.redisTemplate = redisTemplate;
+        // The TTL bounds staleness if a pub/sub message is ever missed
+        this.versions = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+        listenerContainer.addMessageListener(this, new ChannelTopic(VERSION_CHANGED_CHANNEL));
+    }
+
+    public long currentVersion(String username) {
+        return versions.get(username, this::loadVersion);
+    }
+
+    /**
+     * Invalidates every token issued to the user so far.
+     *
+     * @return the new version, to be embedded in tokens issued from now on
+     */
+    public long revokeAll(String username) {
+        Long version = redisTemplate.execute(
+                REVOKE_ALL_SCRIPT,
+                List.of(sessionVersionPrefix + username),
+                VERSION_CHANGED_CHANNEL,
+                username
+        );
+        long newVersion = version == null ? 0 : version;
+        versions.asMap().merge(username, newVersion, Math::max);
+        return newVersion;
+    }
+
+    private long loadVersion(String username) {
+        String version = redisTemplate.opsForValue().get(sessionVersionPrefix + username);
+        return version == null ? 0 : Long.parseLong(version);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.lastIndexOf(MESSAGE_SEPARATOR);
+        if (separator < 0) {
+            return;
+        }
+        String username = body.substring(0, separator);
+        long version = Long.parseLong(body.substring(separator + 1));
+        versions.asMap().merge(username, version, Math::max);
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.springrestful.security;
+
+import com.example.springrestful.service.impl.CustomUserDetailsImpl;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Bounded in-process cache of {@link CustomUserDetailsImpl} keyed by email.
+ * <p>
+ * Evictions are broadcast over Redis pub/sub so every node drops its copy as soon as a
+ * user's password, verification state or roles change.
+ */
+@Component
+@Slf4j
+public class UserDetailsCache implements MessageListener {
+    private static final String INVALIDATION_CHANNEL = "user_details:invalidate";
+
+    private final Cache<String, CustomUserDetailsImpl> cache;
+    private final RedisTemplate<String, String> redisTemplate;
+
+    public UserDetailsCache(
+            RedisTemplate<String, String> redisTemplate,
+            RedisMessageListenerContainer listenerContainer,
+            MeterRegistry meterRegistry,
+            @Value("${application.user-details-cache.max-size}") long maxSize,
+            @Value("${application.user-details-cache.ttl-seconds}") long ttlSeconds
+    ) {
+        this.redisTemplate = redisTemplate;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "userDetails");
+        listenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATION_CHANNEL));
+    }
+
+    public CustomUserDetailsImpl get(String email, Function<String, CustomUserDetailsImpl> loader) {
+        return cache.get(email, loader);
+    }
+
+    /**
+     * Drops the cached entry for this user on every node. Inside a transaction the broadcast
+     * is deferred until commit, so other nodes cannot reload the row before it changes.
+     */
+    public void invalidate(String email) {
+        cache.invalidate(email);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publishInvalidation(email);
+                }
+            });
+        } else {
+            publishInvalidation(email);
+        }
+    }
+
+    private void publishInvalidation(String email) {
+        try {
+            redisTemplate.convertAndSend(INVALIDATION_CHANNEL, email);
+        } catch (Exception e) {
+            // Other nodes still converge once their entry reaches its TTL
+            log.error("💥 Failed to publish user details invalidation for: {}", email, e);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String email = new String(message.getBody(), StandardCharsets.UTF_8);
+        cache.invalidate(email);
+        log.debug("🗑️ User details cache entry evicted for: {}", email);
+    }
+}
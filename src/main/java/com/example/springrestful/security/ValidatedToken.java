@@ -0,0 +1,50 @@
+package com.example.springrestful.security;
+
+import lombok.Builder;
+import lombok.Getter;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * A JWT whose signature and expiry have been verified, with the claims the
+ * authentication path needs already extracted. Produced once per request by
+ * {@link com.example.springrestful.util.JwtUtil#validateToken(String)}.
+ */
+@Getter
+@Builder
+public class ValidatedToken {
+    public static final String ACCESS_TOKEN_TYPE = "access";
+    public static final String REFRESH_TOKEN_TYPE = "refresh";
+
+    // Bump when the identity claims embedded in access tokens change shape
+    public static final int IDENTITY_CLAIMS_VERSION = 1;
+
+    private final String token;
+    private final String subject;
+    private final Date expiration;
+    private final String tokenId;
+    private final String tokenType;
+    private final List<GrantedAuthority> authorities;
+    private final Long userId;
+    private final boolean emailVerified;
+    private final Integer claimsVersion;
+    private final Long sessionVersion;
+
+    public boolean isRefreshToken() {
+        return REFRESH_TOKEN_TYPE.equals(tokenType);
+    }
+
+    /**
+     * Whether the token carries the current identity claims, so the principal can be
+     * rebuilt from it without loading the user from the database.
+     */
+    public boolean hasCurrentIdentityClaims() {
+        return userId != null && claimsVersion != null && claimsVersion == IDENTITY_CLAIMS_VERSION;
+    }
+
+    public long getRemainingMillis() {
+        return Math.max(expiration.getTime() - System.currentTimeMillis(), 0);
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.springrestful.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Hashes the short-lived six-digit codes sent by email.
+ * <p>
+ * Codes live for minutes behind a Redis TTL, so a slow password hash buys nothing. A keyed
+ * HMAC-SHA256 with a server-side pepper keeps a leaked Redis dump from being brute-forced
+ * offline, and a per-code failure counter stops online guessing: once the limit is reached the
+ * stored code is deleted and a new one must be requested.
+ */
+@Component
+@Slf4j
+public class VerificationCodeHasher {
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final String FAILED_ATTEMPTS_PREFIX = "code_failed_attempts:";
+
+    public enum Purpose {
+        EMAIL_VERIFICATION,
+        PASSWORD_RESET
+    }
+
+    public enum Result {
+        MATCHED,
+        MISMATCHED,
+        TOO_MANY_ATTEMPTS
+    }
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final int maxAttempts;
+    private final ThreadLocal<Mac> mac;
+
+    public VerificationCodeHasher(
+            RedisTemplate<String, String> redisTemplate,
+            @Value("${verification.code.pepper}") String pepper,
+            @Value("${jwt.secret}") String jwtSecret,
+            @Value("${verification.code.max-attempts}") int maxAttempts
+    ) {
+        if (pepper == null || pepper.isBlank()) {
+            throw new IllegalStateException("verification.code.pepper must be set");
+        }
+        // A leaked pepper must not also forge access tokens, and vice versa
+        if (pepper.equals(jwtSecret)) {
+            throw new IllegalStateException("verification.code.pepper must differ from jwt.secret");
+        }
+        this.redisTemplate = redisTemplate;
+        this.maxAttempts = maxAttempts;
+        SecretKeySpec key = new SecretKeySpec(pepper.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM);
+        // Mac is not thread-safe; one initialised instance per thread avoids re-keying per call
+        this.mac = ThreadLocal.withInitial(() -> {
+            try {
+                Mac instance = Mac.getInstance(HMAC_ALGORITHM);
+                instance.init(key);
+                return instance;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HMAC-SHA256 is not available", e);
+            }
+        });
+    }
+
+    /**
+     * Hashes a code bound to its purpose and recipient, so a hash can't be replayed for
+     * another email or flow.
+     */
+    public String hash(Purpose purpose, String email, String code) {
+        return Base64.getEncoder().encodeToString(digest(purpose, email, code));
+    }
+
+    /**
+     * Constant-time comparison, without touching the failure counter.
+     */
+    public boolean matches(Purpose purpose, String email, String code, String storedHash) {
+        if (code == null || storedHash == null) {
+            return false;
+        }
+        byte[] expected;
+        try {
+            expected = Base64.getDecoder().decode(storedHash);
+        } catch (IllegalArgumentException e) {
+            // Codes hashed with the previous scheme; the user has to request a new one
+            return false;
+        }
+        return MessageDigest.isEqual(expected, digest(purpose, email, code));
+    }
+
+    /**
+     * Checks a submitted code against the hash stored under {@code codeKey}, counting failures.
+     * Reaching the limit deletes the stored code together with the counter.
+     */
+    public Result verify(Purpose purpose, String email, String code, String storedHash, String codeKey) {
+        String attemptsKey = attemptsKey(purpose, email);
+        if (matches(purpose, email, code, storedHash)) {
+            redisTemplate.delete(attemptsKey);
+            return Result.MATCHED;
+        }
+
+        Long failures = redisTemplate.opsForValue().increment(attemptsKey);
+        if (failures != null && failures == 1) {
+            // Never outlive the code itself
+            Long ttl = redisTemplate.getExpire(codeKey);
+            redisTemplate.expire(attemptsKey, Duration.ofSeconds(ttl == null || ttl <= 0 ? 60 : ttl));
+        }
+        if (failures != null && failures >= maxAttempts) {
+            log.warn("🚫 Too many wrong {} codes for email: {}", purpose, email);
+            redisTemplate.delete(List.of(codeKey, attemptsKey));
+            return Result.TOO_MANY_ATTEMPTS;
+        }
+        return Result.MISMATCHED;
+    }
+
+    /**
+     * Resets the failure counter, to be called whenever a new code is issued.
+     */
+    public void resetAttempts(Purpose purpose, String email) {
+        redisTemplate.delete(attemptsKey(purpose, email));
+    }
+
+    private byte[] digest(Purpose purpose, String email, String code) {
+        Mac instance = mac.get();
+        instance.update(purpose.name().getBytes(StandardCharsets.UTF_8));
+        instance.update((byte) '\n');
+        instance.update(email.getBytes(StandardCharsets.UTF_8));
+        instance.update((byte) '\n');
+        return instance.doFinal(code.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static String attemptsKey(Purpose purpose, String email) {
+        return FAILED_ATTEMPTS_PREFIX + purpose.name().toLowerCase() + ":" + email;
+    }
+}
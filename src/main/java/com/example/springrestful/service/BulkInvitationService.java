@@ -0,0 +1,369 @@
+package com.example.springrestful.service;
+
+import com.example.springrestful.dto.BulkInvitationJobResponse;
+import com.example.springrestful.entity.EmployeeInvitation;
+import com.example.springrestful.entity.Organization;
+import com.example.springrestful.entity.OutboxEvent;
+import com.example.springrestful.exception.BulkInvitationBusyException;
+import com.example.springrestful.exception.InvalidInvitationException;
+import com.example.springrestful.repository.EmployeeInvitationRepository;
+import com.example.springrestful.security.InvitationTokenSigner;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Invites many employees of one organization as a background job.
+ * <p>
+ * Emails are processed in chunks, each in its own transaction: one query finds the addresses
+ * that already have a pending invitation, the rest are inserted with a single JDBC batch, and
+ * their cache entries and emails are recorded in the outbox with two more batch inserts. The
+ * outbox relay then pipelines the Redis writes and queues the emails. Progress is kept in a
+ * Redis hash so any node can answer a status poll.
+ */
+@Service
+@Slf4j
+public class BulkInvitationService {
+    private static final String JOB_PREFIX = "invitation:bulk:";
+    private static final long JOB_TTL_HOURS = 24;
+    private static final Pattern EMAIL_PATTERN = Pattern.compile("^[^@\\s]+@[^@\\s]+\\.[^@\\s]+$");
+    private static final int MAX_EMAIL_LENGTH = 255;
+    // Rows that lost a race with a concurrent invite are skipped, not failed, and return no key
+    private static final String INSERT_INVITATION_SQL = "INSERT INTO employee_invitations " +
+            "(email, invitation_token, token_expiry, organization_id, status, created_at) VALUES (?, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT (organization_id, lower(email)) WHERE status = 'PENDING' DO NOTHING";
+    private static final String UPDATE_TOKEN_SQL = "UPDATE employee_invitations SET invitation_token = ? WHERE id = ?";
+
+    public enum JobStatus {
+        QUEUED,
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    private final OrganizationService organizationService;
+    private final EmployeeInvitationRepository invitationRepository;
+    private final OutboxService outboxService;
+    private final InvitationTokenSigner tokenSigner;
+    private final JdbcTemplate jdbcTemplate;
+    private final RedisTemplate<String, String> redisTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ThreadPoolExecutor executor;
+    private final int chunkSize;
+    private final int maxRows;
+
+    public BulkInvitationService(
+            OrganizationService organizationService,
+            EmployeeInvitationRepository invitationRepository,
+            OutboxService outboxService,
+            InvitationTokenSigner tokenSigner,
+            JdbcTemplate jdbcTemplate,
+            RedisTemplate<String, String> redisTemplate,
+            PlatformTransactionManager transactionManager,
+            @Value("${application.invitation.bulk.chunk-size}") int chunkSize,
+            @Value("${application.invitation.bulk.max-rows}") int maxRows,
+            @Value("${application.invitation.bulk.threads}") int threads,
+            @Value("${application.invitation.bulk.queue-capacity}") int queueCapacity
+    ) {
+        this.organizationService = organizationService;
+        this.invitationRepository = invitationRepository;
+        this.outboxService = outboxService;
+        this.tokenSigner = tokenSigner;
+        this.jdbcTemplate = jdbcTemplate;
+        this.redisTemplate = redisTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+        this.maxRows = maxRows;
+        this.executor = new ThreadPoolExecutor(
+                threads,
+                threads,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new CustomizableThreadFactory("invitation-bulk-"),
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+    }
+
+    /**
+     * Reads one email per line from the first CSV column, with or without an {@code email}
+     * header. The body is read line by line and never buffered whole.
+     */
+    public BulkInvitationJobResponse submitCsv(Long organizationId, InputStream csv) throws IOException {
+        List<String> emails = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(csv, StandardCharsets.UTF_8))) {
+            String line;
+            boolean firstLine = true;
+            while ((line = reader.readLine()) != null) {
+                String email = firstColumn(firstLine ? line.replace("\uFEFF", "") : line);
+                boolean header = firstLine && "email".equalsIgnoreCase(email);
+                firstLine = false;
+                if (header || email.isEmpty()) {
+                    continue;
+                }
+                checkRowLimit(emails.size() + 1);
+                emails.add(email);
+            }
+        }
+        return submit(organizationId, emails);
+    }
+
+    public BulkInvitationJobResponse submit(Long organizationId, List<String> emails) {
+        checkRowLimit(emails.size());
+        Organization organization = organizationService.getOrganizationById(organizationId);
+
+        Set<String> uniqueEmails = new LinkedHashSet<>();
+        long invalid = 0;
+        for (String raw : emails) {
+            String email = raw == null ? "" : EmployeeInvitationService.normalizeEmail(raw);
+            if (email.length() > MAX_EMAIL_LENGTH || !EMAIL_PATTERN.matcher(email).matches()) {
+                invalid++;
+            } else {
+                uniqueEmails.add(email);
+            }
+        }
+        long duplicatesInUpload = emails.size() - invalid - uniqueEmails.size();
+
+        String jobId = UUID.randomUUID().toString();
+        String jobKey = JOB_PREFIX + jobId;
+        Map<String, String> job = new HashMap<>();
+        job.put("organizationId", String.valueOf(organizationId));
+        job.put("status", JobStatus.QUEUED.name());
+        job.put("total", String.valueOf(emails.size()));
+        job.put("processed", String.valueOf(invalid + duplicatesInUpload));
+        job.put("created", "0");
+        job.put("skippedDuplicates", String.valueOf(duplicatesInUpload));
+        job.put("invalid", String.valueOf(invalid));
+        job.put("createdAt", LocalDateTime.now().toString());
+        redisTemplate.opsForHash().putAll(jobKey, job);
+        redisTemplate.expire(jobKey, JOB_TTL_HOURS, TimeUnit.HOURS);
+
+        List<String> toInvite = new ArrayList<>(uniqueEmails);
+        try {
+            executor.execute(() -> run(jobKey, organization, toInvite));
+        } catch (RejectedExecutionException e) {
+            redisTemplate.delete(jobKey);
+            log.warn("🚦 Bulk invitation pool saturated, rejecting job for organization: {}", organizationId);
+            throw new BulkInvitationBusyException(
+                    "Too many bulk invitation jobs are running. Please try again shortly."
+            );
+        }
+
+        log.info("📥 Bulk invitation job {} queued with {} emails for organization: {}",
+                jobId, emails.size(), organizationId);
+        return getJob(jobId).orElseThrow();
+    }
+
+    public Optional<BulkInvitationJobResponse> getJob(String jobId) {
+        Map<Object, Object> job = redisTemplate.opsForHash().entries(JOB_PREFIX + jobId);
+        if (job.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(BulkInvitationJobResponse.builder()
+                .jobId(jobId)
+                .organizationId(Long.parseLong((String) job.get("organizationId")))
+                .status((String) job.get("status"))
+                .total(parseCount(job.get("total")))
+                .processed(parseCount(job.get("processed")))
+                .created(parseCount(job.get("created")))
+                .skippedDuplicates(parseCount(job.get("skippedDuplicates")))
+                .invalid(parseCount(job.get("invalid")))
+                .error((String) job.get("error"))
+                .createdAt((String) job.get("createdAt"))
+                .completedAt((String) job.get("completedAt"))
+                .build());
+    }
+
+    private void run(String jobKey, Organization organization, List<String> emails) {
+        redisTemplate.opsForHash().put(jobKey, "status", JobStatus.RUNNING.name());
+        try {
+            for (int start = 0; start < emails.size(); start += chunkSize) {
+                List<String> chunk = emails.subList(start, Math.min(start + chunkSize, emails.size()));
+                Integer created = transactionTemplate.execute(status -> inviteChunk(organization, chunk));
+                recordProgress(jobKey, chunk.size(), created == null ? 0 : created);
+            }
+            finish(jobKey, JobStatus.COMPLETED, null);
+            log.info("✅ Bulk invitation job {} completed", jobKey);
+        } catch (Exception e) {
+            log.error("💥 Bulk invitation job {} failed", jobKey, e);
+            finish(jobKey, JobStatus.FAILED, e.getMessage());
+        }
+    }
+
+    /**
+     * @return the number of invitations created; the rest already had a pending invitation
+     */
+    private int inviteChunk(Organization organization, List<String> chunk) {
+        Set<String> alreadyInvited = new HashSet<>(invitationRepository.findEmailsByOrganizationIdAndStatusAndEmailIn(
+                organization.getId(),
+                EmployeeInvitation.InvitationStatus.PENDING,
+                chunk
+        ));
+
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime expiry = EmployeeInvitationService.newTokenExpiry();
+        List<EmployeeInvitation> invitations = new ArrayList<>(chunk.size());
+        for (String email : chunk) {
+            if (!alreadyInvited.contains(email)) {
+                invitations.add(EmployeeInvitation.builder()
+                        .email(email)
+                        .organization(organization)
+                        .invitationToken(EmployeeInvitationService.placeholderToken())
+                        .tokenExpiry(expiry)
+                        .status(EmployeeInvitation.InvitationStatus.PENDING)
+                        .createdAt(now)
+                        .build());
+            }
+        }
+        if (invitations.isEmpty()) {
+            return 0;
+        }
+
+        invitations = insertInvitations(invitations);
+
+        List<Map<String, Object>> cacheEntries = new ArrayList<>(invitations.size());
+        List<Map<String, String>> emailRequests = new ArrayList<>(invitations.size());
+        for (EmployeeInvitation invitation : invitations) {
+            cacheEntries.add(OutboxService.invitationCachedPayload(
+                    EmployeeInvitationService.INVITATION_CACHE_PREFIX + invitation.getInvitationToken(),
+                    EmployeeInvitationService.invitationCacheFields(invitation),
+                    EmployeeInvitationService.INVITATION_EXPIRE_TIME
+            ));
+            emailRequests.add(OutboxService.invitationEmailPayload(invitation));
+        }
+        outboxService.recordBatch(OutboxEvent.EventType.INVITATION_CACHED, cacheEntries);
+        outboxService.recordBatch(OutboxEvent.EventType.INVITATION_EMAIL_REQUESTED, emailRequests);
+        return invitations.size();
+    }
+
+    /**
+     * @return the invitations actually inserted, with their ids and signed tokens set
+     */
+    List<EmployeeInvitation> insertInvitations(List<EmployeeInvitation> invitations) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                connection -> connection.prepareStatement(INSERT_INVITATION_SQL, new String[]{"id", "email"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        EmployeeInvitation invitation = invitations.get(i);
+                        ps.setString(1, invitation.getEmail());
+                        ps.setString(2, invitation.getInvitationToken());
+                        ps.setTimestamp(3, Timestamp.valueOf(invitation.getTokenExpiry()));
+                        ps.setLong(4, invitation.getOrganization().getId());
+                        ps.setString(5, invitation.getStatus().name());
+                        ps.setTimestamp(6, Timestamp.valueOf(invitation.getCreatedAt()));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return invitations.size();
+                    }
+                },
+                keyHolder
+        );
+
+        // Skipped rows return no key, so keys are matched by email rather than by position
+        Map<String, Long> ids = new HashMap<>();
+        for (Map<String, Object> key : keyHolder.getKeyList()) {
+            ids.put((String) key.get("email"), ((Number) key.get("id")).longValue());
+        }
+
+        // Tokens are signed over the generated ids, so they are written in a second batch
+        List<EmployeeInvitation> inserted = new ArrayList<>(ids.size());
+        List<Object[]> tokens = new ArrayList<>(ids.size());
+        for (EmployeeInvitation invitation : invitations) {
+            Long id = ids.get(invitation.getEmail());
+            if (id == null) {
+                continue;
+            }
+            invitation.setId(id);
+            invitation.setInvitationToken(tokenSigner.sign(
+                    invitation.getId(),
+                    invitation.getOrganization().getId(),
+                    invitation.getTokenExpiry()
+            ));
+            tokens.add(new Object[]{invitation.getInvitationToken(), invitation.getId()});
+            inserted.add(invitation);
+        }
+        if (!tokens.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_TOKEN_SQL, tokens);
+        }
+        return inserted;
+    }
+
+    private void recordProgress(String jobKey, int processed, int created) {
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, String> redis = (RedisOperations<String, String>) operations;
+                redis.opsForHash().increment(jobKey, "processed", processed);
+                redis.opsForHash().increment(jobKey, "created", created);
+                redis.opsForHash().increment(jobKey, "skippedDuplicates", processed - created);
+                return null;
+            }
+        });
+    }
+
+    private void finish(String jobKey, JobStatus status, String error) {
+        Map<String, String> update = new HashMap<>();
+        update.put("status", status.name());
+        update.put("completedAt", LocalDateTime.now().toString());
+        if (error != null) {
+            update.put("error", error);
+        }
+        redisTemplate.opsForHash().putAll(jobKey, update);
+    }
+
+    private void checkRowLimit(int rows) {
+        if (rows > maxRows) {
+            throw new InvalidInvitationException("A bulk invitation may contain at most " + maxRows + " emails");
+        }
+    }
+
+    private static String firstColumn(String line) {
+        int comma = line.indexOf(',');
+        String cell = (comma < 0 ? line : line.substring(0, comma)).trim();
+        if (cell.length() >= 2 && cell.startsWith("\"") && cell.endsWith("\"")) {
+            cell = cell.substring(1, cell.length() - 1).trim();
+        }
+        return cell;
+    }
+
+    private static long parseCount(Object value) {
+        return value == null ? 0 : Long.parseLong((String) value);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
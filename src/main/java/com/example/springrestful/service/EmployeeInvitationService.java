@@ -1,17 +1,33 @@
 package com.example.springrestful.service;
 
+import com.example.springrestful.dto.InvitationPageResponse;
+import com.example.springrestful.dto.InvitationProjection;
+import com.example.springrestful.dto.InvitationResponse;
 import com.example.springrestful.entity.EmployeeInvitation;
 import com.example.springrestful.entity.Organization;
 import com.example.springrestful.exception.InvalidInvitationException;
 import com.example.springrestful.repository.EmployeeInvitationRepository;
-import com.example.springrestful.security.EmailService;
+import com.example.springrestful.security.InvitationTokenSigner;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
@@ -20,106 +36,175 @@ import java.time.Duration;
 @Service
 @RequiredArgsConstructor
 public class EmployeeInvitationService {
-    private static final String INVITATION_CACHE_PREFIX = "invitation:";
-    private static final String INVITATION_TOKEN_PREFIX = "invitation:token:";
-    private static final Duration INVITATION_EXPIRE_TIME = Duration.ofDays(7);
+    static final String INVITATION_CACHE_PREFIX = "invitation:";
+    static final Duration INVITATION_EXPIRE_TIME = Duration.ofDays(7);
+    private static final String INVITATION_COUNT_PREFIX = "invitation:count:";
+    private static final String CURSOR_SEPARATOR = ",";
+    // Open ends of the expiry window and the position before the first page
+    private static final LocalDateTime EARLIEST = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime LATEST = LocalDateTime.of(9999, 12, 31, 0, 0);
 
     private final EmployeeInvitationRepository invitationRepository;
     private final OrganizationService organizationService;
-    private final EmailService emailService;
+    private final OutboxService outboxService;
     private final RedisTemplate<String, String> redisTemplate;
+    private final InvitationTokenSigner tokenSigner;
+
+    @Value("${application.invitation.listing.max-page-size}")
+    private int maxPageSize;
+
+    @Value("${application.invitation.listing.count-ttl-seconds}")
+    private long countTtlSeconds;
 
     @Transactional
     public EmployeeInvitation createInvitation(Long organizationId, String email) {
+        String normalizedEmail = normalizeEmail(email);
         Organization organization = organizationService.getOrganizationById(organizationId);
-        String token = generateUniqueToken();
 
-        EmployeeInvitation invitation = buildInvitation(email, organization, token);
-        EmployeeInvitation savedInvitation = invitationRepository.save(invitation);
+        if (invitationRepository.existsByEmailAndOrganizationIdAndStatus(
+                normalizedEmail, organizationId, EmployeeInvitation.InvitationStatus.PENDING)) {
+            throw new InvalidInvitationException("A pending invitation already exists for this email");
+        }
+
+        // The token is signed over the generated id, so it is set once the row exists
+        EmployeeInvitation savedInvitation;
+        try {
+            savedInvitation = invitationRepository.save(buildInvitation(normalizedEmail, organization));
+        } catch (DataIntegrityViolationException e) {
+            // A concurrent invite won the unique pending index
+            throw new InvalidInvitationException("A pending invitation already exists for this email");
+        }
+        savedInvitation.setInvitationToken(signToken(savedInvitation));
 
         cacheInvitationData(savedInvitation);
-        emailService.sendInvitationEmail(savedInvitation);
+        requestInvitationEmail(savedInvitation);
 
         return savedInvitation;
     }
 
+    /**
+     * On a cache hit this makes no database reads: the projection is validated in memory and
+     * the state change is a single conditional update.
+     */
     @Transactional
     public void acceptInvitation(String token) {
-        // First check Redis cache
-        Optional<EmployeeInvitation> cachedInvitation = getInvitationFromCache(token);
-        EmployeeInvitation invitation = cachedInvitation.orElseGet(() ->
-                invitationRepository.findByInvitationToken(token)
-                        .orElseThrow(() -> new InvalidInvitationException("Invalid invitation token"))
-        );
+        checkToken(token, true);
+        InvitationProjection invitation = findInvitation(token);
 
         validateInvitation(invitation);
-        updateInvitationStatus(invitation);
-    }
-
-    private String generateUniqueToken() {
-        String token;
-        do {
-            token = UUID.randomUUID().toString();
-        } while (Boolean.TRUE.equals(redisTemplate.hasKey(INVITATION_TOKEN_PREFIX + token)));
-        return token;
+        transitionFromPending(invitation, EmployeeInvitation.InvitationStatus.ACCEPTED, LocalDateTime.now());
     }
 
-    private EmployeeInvitation buildInvitation(String email, Organization organization, String token) {
+    private EmployeeInvitation buildInvitation(String email, Organization organization) {
         return EmployeeInvitation.builder()
                 .email(email)
                 .organization(organization)
-                .invitationToken(token)
-                .tokenExpiry(LocalDateTime.now().plus(INVITATION_EXPIRE_TIME))
+                .invitationToken(placeholderToken())
+                .tokenExpiry(newTokenExpiry())
                 .status(EmployeeInvitation.InvitationStatus.PENDING)
                 .createdAt(LocalDateTime.now())
                 .build();
     }
 
-    private void cacheInvitationData(EmployeeInvitation invitation) {
-        String cacheKey = INVITATION_CACHE_PREFIX + invitation.getInvitationToken();
-        String tokenKey = INVITATION_TOKEN_PREFIX + invitation.getInvitationToken();
-
-        Map<String, String> invitationData = Map.of(
-                "id", String.valueOf(invitation.getId()),
-                "email", invitation.getEmail(),
-                "organizationId", String.valueOf(invitation.getOrganization().getId()),
-                "status", invitation.getStatus().toString(),
-                "expiryDate", invitation.getTokenExpiry().toString()
-        );
+    /**
+     * Invitations are stored trimmed and lower-cased, so one address has at most one pending
+     * invitation per organization (enforced by {@code ux_employee_invitations_pending_email}).
+     */
+    static String normalizeEmail(String email) {
+        return email == null ? null : email.trim().toLowerCase(Locale.ROOT);
+    }
 
-        redisTemplate.opsForHash().putAll(cacheKey, invitationData);
-        redisTemplate.opsForValue().set(tokenKey, "1", INVITATION_EXPIRE_TIME);
+    /**
+     * Unique stand-in for the not-null token column until the id needed for signing exists.
+     */
+    static String placeholderToken() {
+        return "pending:" + UUID.randomUUID();
     }
 
-    private Optional<EmployeeInvitation> getInvitationFromCache(String token) {
-        String cacheKey = INVITATION_CACHE_PREFIX + token;
-        Map<Object, Object> cachedData = redisTemplate.opsForHash().entries(cacheKey);
+    // Tokens sign the expiry at second precision; keep the stored value identical
+    static LocalDateTime newTokenExpiry() {
+        return LocalDateTime.now().plus(INVITATION_EXPIRE_TIME).truncatedTo(ChronoUnit.SECONDS);
+    }
 
-        if (cachedData.isEmpty()) {
-            return Optional.empty();
+    private String signToken(EmployeeInvitation invitation) {
+        return tokenSigner.sign(
+                invitation.getId(),
+                invitation.getOrganization().getId(),
+                invitation.getTokenExpiry()
+        );
+    }
+
+    /**
+     * Rejects tokens we never issued, and optionally expired ones, before any I/O.
+     */
+    private void checkToken(String token, boolean rejectExpired) {
+        if (tokenSigner.acceptsLegacyToken(token)) {
+            // Unsigned tokens from before signing are still looked up until the cut-off
+            return;
+        }
+        InvitationTokenSigner.Claims claims = tokenSigner.parse(token)
+                .orElseThrow(() -> new InvalidInvitationException("Invalid invitation token"));
+        if (rejectExpired && claims.isExpired()) {
+            throw new InvalidInvitationException("Invitation has expired");
         }
+    }
 
-        return Optional.of(buildInvitationFromCache(cachedData));
+    /**
+     * The email is queued through the outbox once this transaction commits and sent by the
+     * email workers, so no connection or row lock is held across SMTP.
+     */
+    private void requestInvitationEmail(EmployeeInvitation invitation) {
+        outboxService.recordInvitationEmail(invitation);
     }
 
-    private EmployeeInvitation buildInvitationFromCache(Map<Object, Object> cachedData) {
-        Organization organization = organizationService.getOrganizationById(
-                Long.parseLong((String) cachedData.get("organizationId"))
+    private void cacheInvitationData(EmployeeInvitation invitation) {
+        // Written after commit, so a rolled back invitation never shows up in the cache
+        outboxService.recordInvitationCached(
+                INVITATION_CACHE_PREFIX + invitation.getInvitationToken(),
+                invitationCacheFields(invitation),
+                INVITATION_EXPIRE_TIME
         );
+    }
 
-        return EmployeeInvitation.builder()
-                .id(Long.parseLong((String) cachedData.get("id")))
-                .email((String) cachedData.get("email"))
-                .organization(organization)
-                .invitationToken((String) cachedData.get("token"))
-                .status(EmployeeInvitation.InvitationStatus.valueOf((String) cachedData.get("status")))
-                .tokenExpiry(LocalDateTime.parse((String) cachedData.get("expiryDate")))
-                .build();
+    static Map<String, String> invitationCacheFields(EmployeeInvitation invitation) {
+        return InvitationProjection.fromEntity(invitation).toHash();
+    }
+
+    /**
+     * Reads the cached projection, falling back to one joined query on a miss or on an entry
+     * from an older schema, and caches what it loaded until the token expires.
+     */
+    private InvitationProjection findInvitation(String token) {
+        String cacheKey = INVITATION_CACHE_PREFIX + token;
+        Optional<InvitationProjection> cached = InvitationProjection.fromHash(redisTemplate.opsForHash().entries(cacheKey));
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+
+        InvitationProjection invitation = invitationRepository.findWithOrganizationByInvitationToken(token)
+                .map(InvitationProjection::fromEntity)
+                .orElseThrow(() -> new InvalidInvitationException("Invalid invitation token"));
+
+        Duration ttl = Duration.between(LocalDateTime.now(), invitation.getTokenExpiry());
+        if (!ttl.isNegative() && !ttl.isZero()) {
+            redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) {
+                    RedisOperations<String, String> redis = (RedisOperations<String, String>) operations;
+                    redis.delete(cacheKey);
+                    redis.opsForHash().putAll(cacheKey, invitation.toHash());
+                    redis.expire(cacheKey, ttl);
+                    return null;
+                }
+            });
+        }
+        return invitation;
     }
 
-    private void validateInvitation(EmployeeInvitation invitation) {
+    private void validateInvitation(InvitationProjection invitation) {
         if (invitation.getTokenExpiry().isBefore(LocalDateTime.now())) {
-            invalidateInvitation(invitation.getInvitationToken());
+            invalidateInvitation(invitation.getToken());
             throw new InvalidInvitationException("Invitation has expired");
         }
 
@@ -128,37 +213,129 @@ public class EmployeeInvitationService {
         }
     }
 
-    private void updateInvitationStatus(EmployeeInvitation invitation) {
-        invitation.setStatus(EmployeeInvitation.InvitationStatus.ACCEPTED);
-        invitation.setAcceptedAt(LocalDateTime.now());
-
-        EmployeeInvitation updatedInvitation = invitationRepository.save(invitation);
-        updateInvitationCache(updatedInvitation);
-    }
+    /**
+     * Moves a pending invitation to its final status. The update only matches while the row is
+     * still pending, so a stale cache entry or a concurrent accept/cancel can't apply twice.
+     */
+    private void transitionFromPending(InvitationProjection invitation,
+                                       EmployeeInvitation.InvitationStatus status,
+                                       LocalDateTime acceptedAt) {
+        int updated = invitationRepository.updateStatusIfCurrent(
+                invitation.getId(),
+                EmployeeInvitation.InvitationStatus.PENDING,
+                status,
+                acceptedAt
+        );
+        if (updated == 0) {
+            invalidateInvitation(invitation.getToken());
+            throw new InvalidInvitationException("Invitation is no longer valid");
+        }
 
-    private void updateInvitationCache(EmployeeInvitation invitation) {
-        String cacheKey = INVITATION_CACHE_PREFIX + invitation.getInvitationToken();
-        redisTemplate.opsForHash().put(cacheKey, "status", invitation.getStatus().toString());
-        redisTemplate.opsForHash().put(cacheKey, "acceptedAt", invitation.getAcceptedAt().toString());
+        // The next read reloads the final status; evicting only after commit keeps a rolled
+        // back transition from being cached
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                invalidateInvitation(invitation.getToken());
+            }
+        });
     }
 
     private void invalidateInvitation(String token) {
-        String cacheKey = INVITATION_CACHE_PREFIX + token;
-        String tokenKey = INVITATION_TOKEN_PREFIX + token;
-
-        redisTemplate.delete(cacheKey);
-        redisTemplate.delete(tokenKey);
+        redisTemplate.delete(INVITATION_CACHE_PREFIX + token);
     }
 
-    public List<EmployeeInvitation> findByOrganizationId(Long organizationId) {
+    /**
+     * Lists an organization's invitations a page at a time, seeking past the cursor on the
+     * {@code (created_at, id)} index instead of counting off an offset.
+     */
+    @Transactional(readOnly = true)
+    public InvitationPageResponse listInvitations(Long organizationId,
+                                                  EmployeeInvitation.InvitationStatus status,
+                                                  String emailPrefix,
+                                                  LocalDateTime expiresAfter,
+                                                  LocalDateTime expiresBefore,
+                                                  String cursor,
+                                                  int size) {
         // First check if organization exists
         organizationService.getOrganizationById(organizationId);
 
-        // Get all active (PENDING) invitations for the organization
-        return invitationRepository.findByOrganizationIdAndStatus(
-                organizationId,
-                EmployeeInvitation.InvitationStatus.PENDING
-        );
+        String emailPattern = emailPattern(emailPrefix);
+        LocalDateTime from = expiresAfter != null ? expiresAfter : EARLIEST;
+        LocalDateTime to = expiresBefore != null ? expiresBefore : LATEST;
+        int pageSize = Math.max(1, Math.min(size, maxPageSize));
+
+        LocalDateTime afterCreatedAt = EARLIEST;
+        long afterId = 0;
+        if (cursor != null && !cursor.isBlank()) {
+            String[] position = decodeCursor(cursor);
+            afterCreatedAt = LocalDateTime.parse(position[0]);
+            afterId = Long.parseLong(position[1]);
+        }
+
+        // One extra row tells whether another page follows
+        List<InvitationResponse> items = new ArrayList<>(invitationRepository.findPageAfter(
+                organizationId, status, emailPattern, from, to, afterCreatedAt, afterId, Limit.of(pageSize + 1)));
+        String nextCursor = null;
+        if (items.size() > pageSize) {
+            items.remove(pageSize);
+            InvitationResponse last = items.get(pageSize - 1);
+            nextCursor = encodeCursor(last.getCreatedAt(), last.getId());
+        }
+
+        return InvitationPageResponse.builder()
+                .items(items)
+                .nextCursor(nextCursor)
+                .approximateTotal(approximateTotal(organizationId, status, emailPattern, from, to))
+                .build();
+    }
+
+    /**
+     * Counts are served from Redis for a short while, so paging through a large organization
+     * runs the count query once rather than on every page.
+     */
+    private long approximateTotal(Long organizationId,
+                                  EmployeeInvitation.InvitationStatus status,
+                                  String emailPattern,
+                                  LocalDateTime from,
+                                  LocalDateTime to) {
+        String countKey = INVITATION_COUNT_PREFIX + organizationId + ":" + status + ":" + from + ":" + to + ":" + emailPattern;
+        String cached = redisTemplate.opsForValue().get(countKey);
+        if (cached != null) {
+            return Long.parseLong(cached);
+        }
+
+        long total = invitationRepository.countMatching(organizationId, status, emailPattern, from, to);
+        redisTemplate.opsForValue().set(countKey, Long.toString(total), Duration.ofSeconds(countTtlSeconds));
+        return total;
+    }
+
+    private static String emailPattern(String emailPrefix) {
+        if (emailPrefix == null) {
+            return "%";
+        }
+        return normalizeEmail(emailPrefix)
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_") + "%";
+    }
+
+    static String encodeCursor(LocalDateTime createdAt, Long id) {
+        String position = createdAt + CURSOR_SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String[] decodeCursor(String cursor) {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = position.split(CURSOR_SEPARATOR, 2);
+            // Validate both parts here so a bad cursor is reported as such
+            LocalDateTime.parse(parts[0]);
+            Long.parseLong(parts[1]);
+            return parts;
+        } catch (IllegalArgumentException | DateTimeParseException | ArrayIndexOutOfBoundsException e) {
+            throw new InvalidInvitationException("Invalid cursor");
+        }
     }
 
     @Transactional
@@ -166,7 +343,7 @@ public class EmployeeInvitationService {
         // Check for existing pending invitation
         Optional<EmployeeInvitation> existingInvitation = invitationRepository
                 .findByEmailAndOrganizationIdAndStatus(
-                        email,
+                        normalizeEmail(email),
                         organizationId,
                         EmployeeInvitation.InvitationStatus.PENDING
                 );
@@ -177,23 +354,23 @@ public class EmployeeInvitationService {
             // Check if the existing invitation is close to expiry or expired
             if (invitation.getTokenExpiry().isBefore(LocalDateTime.now().plusDays(1))) {
                 // Update existing invitation with new token and expiry
-                String newToken = generateUniqueToken();
-                invitation.setInvitationToken(newToken);
-                invitation.setTokenExpiry(LocalDateTime.now().plus(INVITATION_EXPIRE_TIME));
+                String previousToken = invitation.getInvitationToken();
+                invitation.setTokenExpiry(newTokenExpiry());
+                invitation.setInvitationToken(signToken(invitation));
 
                 EmployeeInvitation updatedInvitation = invitationRepository.save(invitation);
 
                 // Update cache with new token
-                invalidateInvitation(invitation.getInvitationToken());
+                invalidateInvitation(previousToken);
                 cacheInvitationData(updatedInvitation);
 
                 // Resend email
-                emailService.sendInvitationEmail(updatedInvitation);
+                requestInvitationEmail(updatedInvitation);
 
                 return updatedInvitation;
             } else {
                 // If invitation is still valid and not close to expiry, just resend the email
-                emailService.sendInvitationEmail(invitation);
+                requestInvitationEmail(invitation);
                 return invitation;
             }
         }
@@ -204,27 +381,19 @@ public class EmployeeInvitationService {
 
     @Transactional
     public void cancelInvitation(String token) {
-        // First check Redis cache
-        Optional<EmployeeInvitation> cachedInvitation = getInvitationFromCache(token);
-        EmployeeInvitation invitation = cachedInvitation.orElseGet(() ->
-                invitationRepository.findByInvitationToken(token)
-                        .orElseThrow(() -> new InvalidInvitationException("Invalid invitation token"))
-        );
+        // Expired invitations can still be cancelled
+        checkToken(token, false);
+        InvitationProjection invitation = findInvitation(token);
 
         // Can only cancel PENDING invitations
         if (invitation.getStatus() != EmployeeInvitation.InvitationStatus.PENDING) {
             throw new InvalidInvitationException("Cannot cancel non-pending invitation");
         }
 
-        // Update status to CANCELLED
-        invitation.setStatus(EmployeeInvitation.InvitationStatus.CANCELLED);
-        invitationRepository.save(invitation);
-
-        // Update cache
-        updateInvitationCache(invitation);
+        transitionFromPending(invitation, EmployeeInvitation.InvitationStatus.CANCELLED, null);
 
         // Optionally, could send an email to the user informing them that
         // their invitation has been cancelled
         // emailService.sendInvitationCancellationEmail(invitation.getEmail());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,103 @@
+package com.example.springrestful.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Marks pending invitations past their expiry as EXPIRED in bounded batches.
+ * <p>
+ * Each batch is one statement that locks up to batch-size due rows with
+ * {@code FOR UPDATE SKIP LOCKED}, so sweepers on several nodes split the work instead of
+ * blocking each other, and returns the tokens so their cache entries can be evicted in one
+ * pipeline once the batch has committed. Due rows are found through the partial index
+ * {@code idx_employee_invitations_pending_expiry}.
+ */
+@Component
+@Slf4j
+public class InvitationExpirySweeper {
+    private static final String EXPIRE_BATCH_SQL = "UPDATE employee_invitations SET status = 'EXPIRED' " +
+            "WHERE id IN (SELECT id FROM employee_invitations " +
+            "WHERE status = 'PENDING' AND token_expiry < ? " +
+            "ORDER BY token_expiry LIMIT ? FOR UPDATE SKIP LOCKED) " +
+            "RETURNING invitation_token";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final RedisTemplate<String, String> redisTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+
+    public InvitationExpirySweeper(
+            JdbcTemplate jdbcTemplate,
+            RedisTemplate<String, String> redisTemplate,
+            PlatformTransactionManager transactionManager,
+            @Value("${application.invitation.expiry-sweep.batch-size}") int batchSize,
+            @Value("${application.invitation.expiry-sweep.max-batches-per-run}") int maxBatchesPerRun
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.redisTemplate = redisTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+    }
+
+    @Scheduled(fixedDelayString = "${application.invitation.expiry-sweep.interval-ms}")
+    public void sweep() {
+        int expired = 0;
+        try {
+            for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+                List<String> tokens = expireBatch();
+                evict(tokens);
+                expired += tokens.size();
+                if (tokens.size() < batchSize) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            log.error("💥 Invitation expiry sweep failed", e);
+        }
+        if (expired > 0) {
+            log.info("⌛ Expired {} pending invitations", expired);
+        }
+    }
+
+    private List<String> expireBatch() {
+        List<String> tokens = transactionTemplate.execute(status -> jdbcTemplate.queryForList(
+                EXPIRE_BATCH_SQL,
+                String.class,
+                Timestamp.valueOf(LocalDateTime.now()),
+                batchSize
+        ));
+        return tokens == null ? Collections.emptyList() : tokens;
+    }
+
+    private void evict(List<String> tokens) {
+        if (tokens.isEmpty()) {
+            return;
+        }
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, String> redis = (RedisOperations<String, String>) operations;
+                for (String token : tokens) {
+                    redis.delete(EmployeeInvitationService.INVITATION_CACHE_PREFIX + token);
+                }
+                return null;
+            }
+        });
+    }
+}
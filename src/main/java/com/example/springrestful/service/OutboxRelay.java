@@ -0,0 +1,315 @@
+package com.example.springrestful.service;
+
+import com.example.springrestful.entity.OutboxEvent;
+import com.example.springrestful.repository.OutboxEventRepository;
+import com.example.springrestful.security.EmailQueueService;
+import com.example.springrestful.security.MailQueue;
+import com.example.springrestful.security.OutboxPayloadCipher;
+import com.example.springrestful.security.VerificationCodeHasher;
+import com.example.springrestful.util.EmailUtil;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.data.redis.connection.RedisPipelineException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Carries out committed outbox events.
+ * <p>
+ * Each pass claims a batch with {@code FOR UPDATE SKIP LOCKED}, so relays on several nodes
+ * split the backlog instead of contending for it, and applies the whole batch in one Redis
+ * pipeline. If a command fails, the batch's events are replayed one pipeline each, so rows
+ * whose commands succeeded are deleted in the same transaction and only the failed ones are
+ * retried with backoff. Delivery is at-least-once, so every handler is idempotent apart from
+ * possibly queueing an email twice.
+ */
+@Component
+@Slf4j
+public class OutboxRelay implements DisposableBean {
+    static final String PURPOSE = "purpose";
+    static final String EMAIL = "email";
+    static final String CODE_KEY = "codeKey";
+    static final String CODE_HASH = "codeHash";
+    static final String ENCRYPTED_CODE = "encryptedCode";
+    static final String EXPIRES_AT = "expiresAt";
+    static final String CACHE_KEY = "cacheKey";
+    static final String FIELDS = "fields";
+    static final String TTL_SECONDS = "ttlSeconds";
+
+    private static final TypeReference<Map<String, Object>> PAYLOAD_TYPE = new TypeReference<>() {
+    };
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final RedisTemplate<String, String> redisTemplate;
+    private final EmailQueueService emailQueueService;
+    private final ObjectMapper objectMapper;
+    private final OutboxPayloadCipher payloadCipher;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final long retryBaseDelayMillis;
+    private final long retryMaxDelayMillis;
+
+    // A single relay thread per node; wake-ups while a pass is pending collapse into it
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "outbox-relay");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean passPending = new AtomicBoolean();
+
+    public OutboxRelay(
+            OutboxEventRepository outboxEventRepository,
+            RedisTemplate<String, String> redisTemplate,
+            EmailQueueService emailQueueService,
+            ObjectMapper objectMapper,
+            OutboxPayloadCipher payloadCipher,
+            PlatformTransactionManager transactionManager,
+            @Value("${application.outbox.batch-size}") int batchSize,
+            @Value("${application.outbox.retry-base-delay-ms}") long retryBaseDelayMillis,
+            @Value("${application.outbox.retry-max-delay-ms}") long retryMaxDelayMillis
+    ) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.redisTemplate = redisTemplate;
+        this.emailQueueService = emailQueueService;
+        this.objectMapper = objectMapper;
+        this.payloadCipher = payloadCipher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.retryBaseDelayMillis = retryBaseDelayMillis;
+        this.retryMaxDelayMillis = retryMaxDelayMillis;
+    }
+
+    /**
+     * Schedules a relay pass unless one is already waiting to run.
+     */
+    public void wakeUp() {
+        if (passPending.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                passPending.set(false);
+            }
+        }
+    }
+
+    // Picks up events committed by other nodes, due retries, and anything a wake-up missed
+    @Scheduled(fixedDelayString = "${application.outbox.poll-interval-ms}")
+    public void poll() {
+        wakeUp();
+    }
+
+    private void drain() {
+        // Cleared before reading, so a commit during this pass schedules another one
+        passPending.set(false);
+        try {
+            int relayed;
+            do {
+                relayed = relayBatch();
+            } while (relayed == batchSize);
+        } catch (Exception e) {
+            log.error("💥 Outbox relay pass failed", e);
+        }
+    }
+
+    /**
+     * @return the number of events claimed, or -1 if any of them failed and was rescheduled
+     */
+    int relayBatch() {
+        Integer relayed = transactionTemplate.execute(status -> {
+            List<OutboxEvent> batch = outboxEventRepository.claimBatch(LocalDateTime.now(), batchSize);
+            if (batch.isEmpty()) {
+                return 0;
+            }
+
+            List<OutboxEvent> dispatchable = new ArrayList<>(batch.size());
+            List<Map<String, Object>> payloads = new ArrayList<>(batch.size());
+            boolean failed = false;
+            for (OutboxEvent event : batch) {
+                try {
+                    payloads.add(objectMapper.readValue(event.getPayload(), PAYLOAD_TYPE));
+                    dispatchable.add(event);
+                } catch (Exception e) {
+                    reschedule(event, e);
+                    failed = true;
+                }
+            }
+
+            List<OutboxEvent> delivered = dispatch(dispatchable, payloads);
+            if (delivered.size() < dispatchable.size()) {
+                log.warn("⚠️ {} of {} outbox events failed, rescheduling them",
+                        dispatchable.size() - delivered.size(), dispatchable.size());
+                failed = true;
+            }
+
+            outboxEventRepository.deleteAllInBatch(delivered);
+            log.debug("📤 Relayed {} outbox events", delivered.size());
+            return failed ? -1 : batch.size();
+        });
+        return relayed == null ? 0 : relayed;
+    }
+
+    /**
+     * Applies the events in one pipeline and returns those whose commands all succeeded.
+     * Failed events are rescheduled here.
+     */
+    private List<OutboxEvent> dispatch(List<OutboxEvent> events, List<Map<String, Object>> payloads) {
+        if (events.isEmpty()) {
+            return events;
+        }
+        Exception[] errors = new Exception[events.size()];
+        try {
+            pipeline(events, payloads, errors, 0, events.size());
+        } catch (RedisPipelineException e) {
+            // Lettuce fails the whole pipeline on a command error without saying which command,
+            // so replay the events one pipeline each to find the ones that fail
+            log.warn("⚠️ Outbox pipeline of {} events failed, retrying them one by one", events.size(), e);
+            isolateFailures(events, payloads, errors);
+        } catch (RuntimeException e) {
+            return rescheduleAll(events, e);
+        }
+
+        List<OutboxEvent> delivered = new ArrayList<>(events.size());
+        for (int i = 0; i < events.size(); i++) {
+            if (errors[i] == null) {
+                delivered.add(events.get(i));
+            } else {
+                reschedule(events.get(i), errors[i]);
+            }
+        }
+        return delivered;
+    }
+
+    private void isolateFailures(List<OutboxEvent> events, List<Map<String, Object>> payloads, Exception[] errors) {
+        for (int i = 0; i < events.size(); i++) {
+            if (errors[i] != null) {
+                continue;
+            }
+            try {
+                pipeline(events, payloads, errors, i, i + 1);
+            } catch (RedisPipelineException e) {
+                errors[i] = e;
+            } catch (RuntimeException e) {
+                // Redis itself is failing; leave the rest for the next attempt
+                for (int j = i; j < events.size(); j++) {
+                    if (errors[j] == null) {
+                        errors[j] = e;
+                    }
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Queues events {@code from} until {@code to} in one pipeline. An event whose payload can't
+     * be applied is recorded in {@code errors} without failing the others.
+     */
+    private void pipeline(List<OutboxEvent> events, List<Map<String, Object>> payloads, Exception[] errors,
+                          int from, int to) {
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, String> redis = (RedisOperations<String, String>) operations;
+                for (int i = from; i < to; i++) {
+                    try {
+                        apply(redis, events.get(i).getEventType(), payloads.get(i));
+                    } catch (RuntimeException e) {
+                        errors[i] = e;
+                    }
+                }
+                return null;
+            }
+        });
+    }
+
+    private List<OutboxEvent> rescheduleAll(List<OutboxEvent> events, Exception cause) {
+        log.warn("⚠️ Outbox pipeline of {} events failed, rescheduling", events.size(), cause);
+        events.forEach(event -> reschedule(event, cause));
+        return List.of();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void apply(RedisOperations<String, String> redis, OutboxEvent.EventType eventType,
+                      Map<String, Object> payload) {
+        switch (eventType) {
+            case CODE_ISSUED -> {
+                String email = (String) payload.get(EMAIL);
+                long remainingMillis = ((Number) payload.get(EXPIRES_AT)).longValue() - System.currentTimeMillis();
+                if (remainingMillis <= 0) {
+                    log.warn("⌛ Dropping expired code for: {}", email);
+                    return;
+                }
+                VerificationCodeHasher.Purpose purpose =
+                        VerificationCodeHasher.Purpose.valueOf((String) payload.get(PURPOSE));
+                if (!(payload.get(ENCRYPTED_CODE) instanceof String encryptedCode)) {
+                    throw new IllegalArgumentException("Code event has no encrypted code");
+                }
+                String plainCode = payloadCipher.decrypt(encryptedCode, email);
+                Map<String, String> emailData = EmailUtil.createEmailQueueData(email, plainCode);
+                emailData.put(PURPOSE, purpose.name());
+
+                redis.opsForValue().set((String) payload.get(CODE_KEY), (String) payload.get(CODE_HASH),
+                        Duration.ofMillis(remainingMillis));
+                redis.delete(VerificationCodeHasher.attemptsKey(purpose, email));
+                emailQueueService.enqueue(redis, MailQueue.VERIFICATION, emailData);
+            }
+            case INVITATION_CACHED -> {
+                // Replaces the whole entry, so no field of an older layout survives
+                String cacheKey = (String) payload.get(CACHE_KEY);
+                Map<String, String> fields = (Map<String, String>) payload.get(FIELDS);
+                Duration ttl = Duration.ofSeconds(((Number) payload.get(TTL_SECONDS)).longValue());
+                redis.delete(cacheKey);
+                redis.opsForHash().putAll(cacheKey, fields);
+                redis.expire(cacheKey, ttl);
+            }
+            case INVITATION_EMAIL_REQUESTED -> {
+                Map<String, String> emailData = new HashMap<>();
+                payload.forEach((key, value) -> emailData.put(key, String.valueOf(value)));
+                emailQueueService.enqueue(redis, MailQueue.INVITATION, emailData);
+            }
+        }
+    }
+
+    private void reschedule(OutboxEvent event, Exception cause) {
+        int attempts = event.getAttempts() + 1;
+        long delay = Math.min(retryMaxDelayMillis, retryBaseDelayMillis << Math.min(attempts - 1, 20));
+        event.setAttempts(attempts);
+        event.setAvailableAt(LocalDateTime.now().plus(Duration.ofMillis(delay)));
+        // The pipeline wrapper's own message says nothing about what failed
+        String error = String.valueOf(NestedExceptionUtils.getMostSpecificCause(cause).getMessage());
+        event.setLastError(error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error);
+        if (attempts % 10 == 0) {
+            log.error("💥 Outbox event {} ({}) still failing after {} attempts: {}",
+                    event.getId(), event.getEventType(), attempts, error);
+        }
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+}
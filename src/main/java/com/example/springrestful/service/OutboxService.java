@@ -0,0 +1,134 @@
+package com.example.springrestful.service;
+
+import com.example.springrestful.entity.EmployeeInvitation;
+import com.example.springrestful.entity.OutboxEvent;
+import com.example.springrestful.repository.OutboxEventRepository;
+import com.example.springrestful.security.OutboxPayloadCipher;
+import com.example.springrestful.security.VerificationCodeHasher;
+import com.example.springrestful.util.EmailUtil;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records side effects in the caller's transaction. Nothing is written to Redis or queued for
+ * sending unless the transaction commits; {@link OutboxRelay} carries the events out afterwards.
+ */
+@Service
+@RequiredArgsConstructor
+public class OutboxService {
+    private static final String INSERT_SQL = "INSERT INTO outbox_events " +
+            "(event_type, payload, attempts, available_at, created_at) VALUES (?, ?, 0, ?, ?)";
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final OutboxRelay outboxRelay;
+    private final OutboxPayloadCipher payloadCipher;
+
+    /**
+     * Stores a newly issued verification or reset code and emails it to the user.
+     * The row holds the code only encrypted, and only until the email is queued.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordCodeIssued(VerificationCodeHasher.Purpose purpose, String email, String codeKey,
+                                 String codeHash, String plainCode, Duration ttl) {
+        Map<String, Object> payload = Map.of(
+                OutboxRelay.PURPOSE, purpose.name(),
+                OutboxRelay.EMAIL, email,
+                OutboxRelay.CODE_KEY, codeKey,
+                OutboxRelay.CODE_HASH, codeHash,
+                OutboxRelay.ENCRYPTED_CODE, payloadCipher.encrypt(plainCode, email),
+                // The code expires relative to issuance, not to when the relay gets to it
+                OutboxRelay.EXPIRES_AT, Instant.now().plus(ttl).toEpochMilli()
+        );
+        record(OutboxEvent.EventType.CODE_ISSUED, payload);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordInvitationCached(String cacheKey, Map<String, String> fields, Duration ttl) {
+        record(OutboxEvent.EventType.INVITATION_CACHED, invitationCachedPayload(cacheKey, fields, ttl));
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordInvitationEmail(EmployeeInvitation invitation) {
+        record(OutboxEvent.EventType.INVITATION_EMAIL_REQUESTED, invitationEmailPayload(invitation));
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(OutboxEvent.EventType eventType, Map<String, ?> payload) {
+        try {
+            outboxEventRepository.save(OutboxEvent.builder()
+                    .eventType(eventType)
+                    .payload(objectMapper.writeValueAsString(payload))
+                    .build());
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Unserializable outbox payload for " + eventType, e);
+        }
+
+        wakeRelayAfterCommit();
+    }
+
+    /**
+     * Records many events of one type with a single JDBC batch insert, for bulk operations
+     * where saving entities one by one would dominate.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordBatch(OutboxEvent.EventType eventType, List<? extends Map<String, ?>> payloads) {
+        if (payloads.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>(payloads.size());
+        for (Map<String, ?> payload : payloads) {
+            try {
+                rows.add(new Object[]{eventType.name(), objectMapper.writeValueAsString(payload), now, now});
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException("Unserializable outbox payload for " + eventType, e);
+            }
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+        wakeRelayAfterCommit();
+    }
+
+    static Map<String, Object> invitationCachedPayload(String cacheKey, Map<String, String> fields, Duration ttl) {
+        return Map.of(
+                OutboxRelay.CACHE_KEY, cacheKey,
+                OutboxRelay.FIELDS, fields,
+                OutboxRelay.TTL_SECONDS, ttl.toSeconds()
+        );
+    }
+
+    static Map<String, String> invitationEmailPayload(EmployeeInvitation invitation) {
+        return EmailUtil.createInvitationQueueData(
+                invitation.getEmail(),
+                invitation.getOrganization().getName(),
+                invitation.getInvitationToken(),
+                invitation.getTokenExpiry().toLocalDate().toString()
+        );
+    }
+
+    private void wakeRelayAfterCommit() {
+        // Relay right after commit instead of waiting for the next poll
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                outboxRelay.wakeUp();
+            }
+        });
+    }
+}
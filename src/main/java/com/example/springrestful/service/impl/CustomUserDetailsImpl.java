@@ -1,6 +1,7 @@
 package com.example.springrestful.service.impl;
 
 import com.example.springrestful.entity.User;
+import com.example.springrestful.security.ValidatedToken;
 import lombok.Getter;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
@@ -30,6 +31,28 @@ public class CustomUserDetailsImpl implements UserDetails {
                 .collect(Collectors.toList());
     }
 
+    private CustomUserDetailsImpl(Long id, String email, boolean emailVerified,
+                                  Collection<? extends GrantedAuthority> authorities) {
+        this.id = id;
+        this.email = email;
+        this.password = null;
+        this.emailVerified = emailVerified;
+        this.authorities = authorities;
+    }
+
+    /**
+     * Rebuilds the principal from a token's identity claims without touching the database.
+     * The password is not available in this case.
+     */
+    public static CustomUserDetailsImpl fromValidatedToken(ValidatedToken token) {
+        return new CustomUserDetailsImpl(
+                token.getUserId(),
+                token.getSubject(),
+                token.isEmailVerified(),
+                token.getAuthorities()
+        );
+    }
+
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
         return authorities;
@@ -3,21 +3,51 @@ package com.example.springrestful.service.impl;
 
 import com.example.springrestful.entity.User;
 import com.example.springrestful.repository.AuthRepository;
+import com.example.springrestful.security.UserDetailsCache;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 @Service
-public class UserDetailsServiceImpl implements UserDetailsService {
+@Slf4j
+public class UserDetailsServiceImpl implements UserDetailsService, UserDetailsPasswordService {
     private final AuthRepository authRepository;
+    private final UserDetailsCache userDetailsCache;
 
-    public UserDetailsServiceImpl(AuthRepository authRepository) {
+    public UserDetailsServiceImpl(AuthRepository authRepository, UserDetailsCache userDetailsCache) {
         this.authRepository = authRepository;
+        this.userDetailsCache = userDetailsCache;
     }
 
     @Override
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
+        // Served from the near-cache; only misses hit users + user_roles
+        return userDetailsCache.get(email, this::loadFromDatabase);
+    }
+
+    /**
+     * Called by the authentication provider after a successful login whose stored hash uses an
+     * outdated algorithm or cost; {@code newPassword} is already encoded.
+     */
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails userDetails, String newPassword) {
+        User user = authRepository.findByEmail(userDetails.getUsername())
+                .orElseThrow(() -> new UsernameNotFoundException("User not found with email: " + userDetails.getUsername()));
+
+        user.setPassword(newPassword);
+        authRepository.save(user);
+        userDetailsCache.invalidate(user.getEmail());
+        log.info("🔐 Upgraded password hash for: {}", user.getEmail());
+
+        return new CustomUserDetailsImpl(user);
+    }
+
+    private CustomUserDetailsImpl loadFromDatabase(String email) {
         User user = authRepository.findByEmail(email)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found with email: " + email));
 
@@ -1,8 +1,6 @@
 package com.example.springrestful.util;
 
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.security.crypto.password.PasswordEncoder;
 
 import java.security.SecureRandom;
 import java.util.HashMap;
@@ -21,19 +19,6 @@ public class EmailUtil {
         return String.valueOf(code);
     }
 
-    public static String hashVerificationCode(String plainCode, PasswordEncoder passwordEncoder) {
-        return passwordEncoder.encode(plainCode);
-    }
-
-    public static SimpleMailMessage createVerificationEmail(String fromEmail, String toEmail, String verificationCode) {
-        SimpleMailMessage message = new SimpleMailMessage();
-        message.setFrom(fromEmail);
-        message.setTo(toEmail);
-        message.setSubject("Email Verification Code");
-        message.setText(buildVerificationEmailContent(verificationCode));
-        return message;
-    }
-
     public static Map<String, String> createEmailQueueData(String toEmail, String verificationCode) {
         Map<String, String> emailData = new HashMap<>();
         emailData.put("toEmail", toEmail);
@@ -41,27 +26,17 @@ public class EmailUtil {
         return emailData;
     }
 
-    public static Map<String, String> createInvitationQueueData(String email, String content) {
+    public static Map<String, String> createInvitationQueueData(
+            String email, String organizationName, String invitationToken, String expiryDate) {
         return Map.of(
                 "type", "invitation",
                 "email", email,
-                "content", content
+                "organizationName", organizationName == null ? "" : organizationName,
+                "invitationToken", invitationToken,
+                "expiryDate", expiryDate
         );
     }
 
-    private static String buildVerificationEmailContent(String verificationCode) {
-        return String.format("""
-                Hello,
-                
-                Your verification code is: %s
-                
-                This code will expire in 10 minutes.
-                
-                If you didn't request this, please ignore this email.
-                SeangDev Application Team
-                """, verificationCode);
-    }
-
     public static void logEmailError(String message, String email, Exception e) {
         log.error("💥 {} for email: {}", message, email, e);
     }
@@ -1,45 +1,47 @@
 package com.example.springrestful.util;
 
+import com.example.springrestful.security.JwtKeyManager;
+import com.example.springrestful.security.RevokedTokenRegistry;
+import com.example.springrestful.security.SessionVersionRegistry;
+import com.example.springrestful.security.ValidatedToken;
+import com.example.springrestful.service.impl.CustomUserDetailsImpl;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.SignatureAlgorithm;
-import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 import org.springframework.web.util.WebUtils;
 
-import javax.crypto.SecretKey;
-import java.nio.charset.StandardCharsets;
+import java.security.Key;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
+import java.util.Optional;
+import java.util.UUID;
 import java.util.function.Function;
 
 @Component
+@Slf4j
 public class JwtUtil {
 
-    @Value("${jwt.secret}")
-    private String secret;
-
     @Value("${jwt.access-token.expiration}")
     private long accessTokenExpiration;
 
     @Value("${jwt.refresh-token.expiration}")
     private long refreshTokenExpiration;
 
-    @Value("${jwt.redis.prefix.blacklist}")
-    private String blacklistPrefix;
-
-    @Value("${jwt.redis.prefix.user-sessions}")
-    private String userSessionsPrefix;
-
     // Cookie configuration constants
     private static final String ACCESS_TOKEN_COOKIE_NAME = "access_token";
     private static final String REFRESH_TOKEN_COOKIE_NAME = "refresh_token";
@@ -47,15 +49,43 @@ public class JwtUtil {
     private static final boolean USE_SECURE = true;
     private static final String COOKIE_PATH = "/";
 
-    private final RedisTemplate<String, String> redisTemplate;
-
-    public JwtUtil(RedisTemplate<String, String> redisTemplate) {
-        this.redisTemplate = redisTemplate;
+    // Custom claim names
+    private static final String TOKEN_TYPE_CLAIM = "tokenType";
+    private static final String ROLES_CLAIM = "roles";
+    private static final String USER_ID_CLAIM = "uid";
+    private static final String EMAIL_VERIFIED_CLAIM = "emailVerified";
+    private static final String CLAIMS_VERSION_CLAIM = "cv";
+    private static final String SESSION_VERSION_CLAIM = "sv";
+
+    private final RevokedTokenRegistry revokedTokenRegistry;
+    private final SessionVersionRegistry sessionVersionRegistry;
+    private final JwtKeyManager keyManager;
+
+    // Built once and safe to share across request threads; keys are resolved by kid per token
+    private final JwtParser jwtParser;
+
+    public JwtUtil(RevokedTokenRegistry revokedTokenRegistry,
+                   SessionVersionRegistry sessionVersionRegistry,
+                   JwtKeyManager keyManager) {
+        this.revokedTokenRegistry = revokedTokenRegistry;
+        this.sessionVersionRegistry = sessionVersionRegistry;
+        this.keyManager = keyManager;
+        this.jwtParser = Jwts.parserBuilder()
+                .setSigningKeyResolver(new SigningKeyResolverAdapter() {
+                    @Override
+                    public Key resolveSigningKey(JwsHeader header, Claims claims) {
+                        return keyManager.resolveVerificationKey(header.getKeyId());
+                    }
+                })
+                .build();
     }
 
-    private SecretKey getSigningKey() {
-        byte[] keyBytes = secret.getBytes(StandardCharsets.UTF_8);
-        return Keys.hmacShaKeyFor(keyBytes);
+    /**
+     * Verifies the token signature and returns its claims. Callers that need several
+     * claims from the same token should parse once and reuse the result.
+     */
+    public Claims parseClaims(String token) {
+        return jwtParser.parseClaimsJws(token).getBody();
     }
 
     public String extractUsername(String token) {
@@ -72,15 +102,7 @@ public class JwtUtil {
     }
 
     private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-    }
-
-    private Boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+        return parseClaims(token);
     }
 
     // Method to extract token from either Authorization header or Cookie
@@ -100,6 +122,24 @@ public class JwtUtil {
         return null;
     }
 
+    /**
+     * The refresh token from the Authorization header, or else from its own cookie. The access
+     * token cookie is deliberately not consulted.
+     */
+    public String extractRefreshTokenFromRequest(HttpServletRequest request) {
+        String bearerToken = request.getHeader("Authorization");
+        if (StringUtils.hasText(bearerToken) && bearerToken.startsWith("Bearer ")) {
+            return bearerToken.substring(7);
+        }
+
+        Cookie tokenCookie = WebUtils.getCookie(request, REFRESH_TOKEN_COOKIE_NAME);
+        if (tokenCookie != null && StringUtils.hasText(tokenCookie.getValue())) {
+            return tokenCookie.getValue();
+        }
+
+        return null;
+    }
+
     // New method to set access token in HTTP-only cookie
     public void setAccessTokenCookie(HttpServletResponse response, String token) {
         Cookie cookie = new Cookie(ACCESS_TOKEN_COOKIE_NAME, token);
@@ -136,9 +176,7 @@ public class JwtUtil {
 
     // Overloaded methods to set tokens in cookies with response parameter
     public String generateToken(UserDetails userDetails, HttpServletResponse response) {
-        Map<String, Object> claims = new HashMap<>();
-        String token = createToken(claims, userDetails.getUsername(), accessTokenExpiration);
-        storeUserSession(userDetails.getUsername(), token, accessTokenExpiration);
+        String token = createToken(accessTokenClaims(userDetails), userDetails.getUsername(), accessTokenExpiration);
 
         // Set the token in a cookie
         setAccessTokenCookie(response, token);
@@ -147,10 +185,7 @@ public class JwtUtil {
     }
 
     public String generateRefreshToken(UserDetails userDetails, HttpServletResponse response) {
-        Map<String, Object> claims = new HashMap<>();
-        claims.put("tokenType", "refresh");
-        String token = createToken(claims, userDetails.getUsername(), refreshTokenExpiration);
-        storeUserSession(userDetails.getUsername(), token, refreshTokenExpiration);
+        String token = createToken(refreshTokenClaims(), userDetails.getUsername(), refreshTokenExpiration);
 
         // Set the refresh token in a cookie
         setRefreshTokenCookie(response, token);
@@ -160,69 +195,136 @@ public class JwtUtil {
 
     // Original methods to maintain backward compatibility
     public String generateToken(UserDetails userDetails) {
-        Map<String, Object> claims = new HashMap<>();
-        return createToken(claims, userDetails.getUsername(), accessTokenExpiration);
+        return createToken(accessTokenClaims(userDetails), userDetails.getUsername(), accessTokenExpiration);
     }
 
     public String generateRefreshToken(UserDetails userDetails) {
+        return createToken(refreshTokenClaims(), userDetails.getUsername(), refreshTokenExpiration);
+    }
+
+    private Map<String, Object> accessTokenClaims(UserDetails userDetails) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(TOKEN_TYPE_CLAIM, ValidatedToken.ACCESS_TOKEN_TYPE);
+        claims.put(ROLES_CLAIM, userDetails.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .toList());
+
+        // Identity claims let the filter build the principal without a database lookup
+        if (userDetails instanceof CustomUserDetailsImpl customUserDetails) {
+            claims.put(USER_ID_CLAIM, customUserDetails.getId());
+            claims.put(EMAIL_VERIFIED_CLAIM, customUserDetails.isEmailVerified());
+            claims.put(CLAIMS_VERSION_CLAIM, ValidatedToken.IDENTITY_CLAIMS_VERSION);
+        }
+        return claims;
+    }
+
+    private Map<String, Object> refreshTokenClaims() {
         Map<String, Object> claims = new HashMap<>();
-        claims.put("tokenType", "refresh");
-        return createToken(claims, userDetails.getUsername(), refreshTokenExpiration);
+        claims.put(TOKEN_TYPE_CLAIM, ValidatedToken.REFRESH_TOKEN_TYPE);
+        return claims;
     }
 
     private String createToken(Map<String, Object> claims, String subject, long expiration) {
+        // Tokens holding an older session version are rejected once all sessions are revoked
+        claims.put(SESSION_VERSION_CLAIM, sessionVersionRegistry.currentVersion(subject));
+        JwtKeyManager.SigningKey signingKey = keyManager.getCurrentSigningKey();
         return Jwts.builder()
+                .setHeaderParam(JwsHeader.KEY_ID, signingKey.getKeyId())
                 .setClaims(claims)
+                .setId(UUID.randomUUID().toString())
                 .setSubject(subject)
                 .setIssuedAt(new Date(System.currentTimeMillis()))
                 .setExpiration(new Date(System.currentTimeMillis() + expiration))
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .signWith(signingKey.getKey(), signingKey.getAlgorithm())
                 .compact();
     }
 
-    private void storeUserSession(String username, String token, long expiration) {
-        String sessionKey = userSessionsPrefix + username;
-        redisTemplate.opsForSet().add(sessionKey, token);
-        redisTemplate.expire(sessionKey, expiration, TimeUnit.MILLISECONDS);
+    public Boolean validateToken(String token, UserDetails userDetails) {
+        return validateToken(token)
+                .map(validated -> validated.getSubject().equals(userDetails.getUsername()))
+                .orElse(false);
     }
 
-    public Boolean validateToken(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername()) &&
-                !isTokenExpired(token) &&
-                !isTokenBlacklisted(token) &&
-                isValidUserSession(username, token));
+    /**
+     * Verifies the signature and expiry once, then checks revocation against the local
+     * filter of revoked token ids and the user's locally cached session version.
+     *
+     * @return the validated token, or empty if it is malformed, expired, revoked or
+     * no longer part of an active session
+     */
+    public Optional<ValidatedToken> validateToken(String token) {
+        if (!StringUtils.hasText(token)) {
+            return Optional.empty();
+        }
+
+        ValidatedToken validated;
+        try {
+            validated = toValidatedToken(token, parseClaims(token));
+        } catch (JwtException | IllegalArgumentException e) {
+            log.debug("Rejected JWT: {}", e.getMessage());
+            return Optional.empty();
+        }
+
+        // Tokens issued before jti existed cannot be revoked individually, so they are not accepted
+        if (validated.getTokenId() == null || revokedTokenRegistry.isRevoked(validated.getTokenId())) {
+            log.warn("Attempted to use blacklisted token");
+            return Optional.empty();
+        }
+        if (!isValidUserSession(validated)) {
+            log.debug("Token is not part of an active session for: {}", validated.getSubject());
+            return Optional.empty();
+        }
+        return Optional.of(validated);
     }
 
-    private boolean isValidUserSession(String username, String token) {
-        String sessionKey = userSessionsPrefix + username;
-        return Boolean.TRUE.equals(redisTemplate.opsForSet().isMember(sessionKey, token));
+    private boolean isValidUserSession(ValidatedToken validated) {
+        return validated.getSessionVersion() != null &&
+                validated.getSessionVersion() == sessionVersionRegistry.currentVersion(validated.getSubject());
+    }
+
+    private ValidatedToken toValidatedToken(String token, Claims claims) {
+        List<?> roles = claims.get(ROLES_CLAIM, List.class);
+        List<GrantedAuthority> authorities = roles == null ? List.of() : roles.stream()
+                .map(role -> (GrantedAuthority) new SimpleGrantedAuthority(role.toString()))
+                .toList();
+
+        return ValidatedToken.builder()
+                .token(token)
+                .subject(claims.getSubject())
+                .expiration(claims.getExpiration())
+                .tokenId(claims.getId())
+                .tokenType(claims.get(TOKEN_TYPE_CLAIM, String.class))
+                .authorities(authorities)
+                .userId(claims.get(USER_ID_CLAIM, Long.class))
+                .emailVerified(Boolean.TRUE.equals(claims.get(EMAIL_VERIFIED_CLAIM, Boolean.class)))
+                .claimsVersion(claims.get(CLAIMS_VERSION_CLAIM, Integer.class))
+                .sessionVersion(claims.get(SESSION_VERSION_CLAIM, Long.class))
+                .build();
     }
 
     public void invalidateToken(String token) {
         if (token == null) return;
 
-        String username = extractUsername(token);
-        Date expiration = extractExpiration(token);
-        long remainingTtl = Math.max((expiration.getTime() - System.currentTimeMillis()), 0);
-
-        // Add to blacklist
-        String blacklistKey = blacklistPrefix + token;
-        redisTemplate.opsForValue().set(blacklistKey, "true", remainingTtl, TimeUnit.MILLISECONDS);
+        invalidateToken(toValidatedToken(token, extractAllClaims(token)));
+    }
 
-        // Remove from user sessions
-        String sessionKey = userSessionsPrefix + username;
-        redisTemplate.opsForSet().remove(sessionKey, token);
+    public void invalidateToken(ValidatedToken validatedToken) {
+        if (validatedToken.getTokenId() != null) {
+            revokedTokenRegistry.revoke(validatedToken.getTokenId(), validatedToken.getRemainingMillis());
+        }
     }
 
-    public void invalidateAllUserSessions(String username) {
-        String sessionKey = userSessionsPrefix + username;
-        redisTemplate.delete(sessionKey);
+    /**
+     * Revokes every token issued to the subject so far. Tokens are issued with the user's
+     * email as subject, so that is the key to pass here, not {@code User.getUsername()}.
+     */
+    public void invalidateAllUserSessions(String subject) {
+        sessionVersionRegistry.revokeAll(subject);
     }
 
     public boolean isTokenBlacklisted(String token) {
         if (token == null) return false;
-        String blacklistKey = blacklistPrefix + token;
-        return Boolean.TRUE.toString().equals(redisTemplate.opsForValue().get(blacklistKey));
+        String tokenId = extractClaim(token, Claims::getId);
+        return tokenId == null || revokedTokenRegistry.isRevoked(tokenId);
     }
 }
\ No newline at end of file
@@ -0,0 +1,69 @@
+package com.example.springrestful.util;
+
+import org.springframework.http.server.PathContainer;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Matches request paths against a fixed set of Ant-style patterns compiled up front.
+ * <p>
+ * Literal patterns become a hash lookup and {@code /prefix/**} patterns a prefix check, so the
+ * common cases do not allocate. Anything more complex falls back to a parsed {@link PathPattern}.
+ */
+public class PublicPathMatcher {
+    private static final String MULTI_SEGMENT_WILDCARD = "/**";
+
+    private final Set<String> exactPaths = new HashSet<>();
+    private final List<String> prefixes = new ArrayList<>();
+    private final List<PathPattern> patterns = new ArrayList<>();
+
+    public PublicPathMatcher(String[]... patternGroups) {
+        for (String[] group : patternGroups) {
+            for (String pattern : group) {
+                compile(pattern);
+            }
+        }
+    }
+
+    private void compile(String pattern) {
+        if (pattern.endsWith(MULTI_SEGMENT_WILDCARD) && isLiteral(pattern.substring(0, pattern.length() - 3))) {
+            String base = pattern.substring(0, pattern.length() - 3);
+            exactPaths.add(base.isEmpty() ? "/" : base);
+            prefixes.add(base + "/");
+        } else if (isLiteral(pattern)) {
+            exactPaths.add(pattern);
+        } else {
+            patterns.add(PathPatternParser.defaultInstance.parse(pattern));
+        }
+    }
+
+    private static boolean isLiteral(String pattern) {
+        return pattern.indexOf('*') < 0 && pattern.indexOf('?') < 0 && pattern.indexOf('{') < 0;
+    }
+
+    public boolean matches(String path) {
+        if (exactPaths.contains(path)) {
+            return true;
+        }
+        for (int i = 0; i < prefixes.size(); i++) {
+            if (path.startsWith(prefixes.get(i))) {
+                return true;
+            }
+        }
+        if (patterns.isEmpty()) {
+            return false;
+        }
+        PathContainer container = PathContainer.parsePath(path);
+        for (PathPattern pattern : patterns) {
+            if (pattern.matches(container)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
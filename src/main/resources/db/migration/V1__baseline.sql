@@ -0,0 +1,102 @@
+-- Schema as previously created by Hibernate's ddl-auto. Databases that already have these
+-- tables are baselined at this version and skip this script.
+
+create table users (
+    id bigint generated by default as identity,
+    email varchar(255) not null unique,
+    username varchar(255) not null unique,
+    password varchar(255) not null,
+    email_verified boolean,
+    email_verification_token varchar(255),
+    email_verification_token_expiry timestamp(6),
+    verification_resend_count integer,
+    last_verification_resend_attempt timestamp(6),
+    password_reset_token varchar(255),
+    password_reset_token_expiry timestamp(6),
+    two_factor_auth_enabled boolean,
+    two_factor_auth_secret varchar(255),
+    created_at timestamp default current_timestamp not null,
+    updated_at timestamp default current_timestamp not null,
+    primary key (id)
+);
+
+create table user_roles (
+    user_id bigint not null,
+    role varchar(255) check (role in ('ADMIN', 'EMPLOYEE'))
+);
+
+create table organizations (
+    id bigint generated by default as identity,
+    name varchar(255),
+    address varchar(255),
+    registration_number varchar(255),
+    owner_id bigint,
+    created_at timestamp(6),
+    updated_at timestamp(6),
+    primary key (id)
+);
+
+create table departments (
+    id bigint generated by default as identity,
+    name varchar(255) not null,
+    organization_id bigint not null,
+    created_at timestamp(6) not null,
+    updated_at timestamp(6) not null,
+    primary key (id)
+);
+
+create table employees (
+    id bigint generated by default as identity,
+    user_id bigint not null unique,
+    organization_id bigint not null,
+    department_id bigint,
+    first_name varchar(255),
+    last_name varchar(255),
+    email_id varchar(255) not null unique,
+    phone_number varchar(255) unique,
+    hire_date date,
+    position varchar(255),
+    salary float(53),
+    is_active boolean not null,
+    employee_number varchar(255) unique,
+    created_at timestamp(6) not null,
+    updated_at timestamp(6) not null,
+    primary key (id)
+);
+
+create table employee_invitations (
+    id bigint generated by default as identity,
+    email varchar(255) not null,
+    invitation_token varchar(255) not null,
+    token_expiry timestamp(6) not null,
+    organization_id bigint not null,
+    department_id bigint,
+    status varchar(255) not null check (status in ('PENDING', 'ACCEPTED', 'EXPIRED', 'CANCELLED')),
+    created_at timestamp(6) not null,
+    accepted_at timestamp(6),
+    primary key (id)
+);
+
+alter table user_roles
+    add constraint FKhfh9dx7w3ubf1co1vdev94g3f foreign key (user_id) references users;
+
+alter table organizations
+    add constraint FK525ovcw3fy6440s4o0tj8xr95 foreign key (owner_id) references users;
+
+alter table departments
+    add constraint FK69kdxq27lkb5p622ypc93tcr4 foreign key (organization_id) references organizations;
+
+alter table employees
+    add constraint FK69x3vjuy1t5p18a5llb8h2fjx foreign key (user_id) references users;
+
+alter table employees
+    add constraint FKh62l7gpgesex8wjd6himtb3e1 foreign key (organization_id) references organizations;
+
+alter table employees
+    add constraint FKgy4qe3dnqrm3ktd76sxp7n4c2 foreign key (department_id) references departments;
+
+alter table employee_invitations
+    add constraint FK7amikk5skf2oemevnywqtqyr3 foreign key (organization_id) references organizations;
+
+alter table employee_invitations
+    add constraint FK3wyixt7956ovrx2aor1egbda5 foreign key (department_id) references departments;
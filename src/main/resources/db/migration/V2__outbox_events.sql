@@ -0,0 +1,13 @@
+-- Transactional outbox for side effects that must follow a commit: Redis writes and queued
+-- emails. New with the outbox relay, so baselined databases get it here.
+create table outbox_events (
+    id bigint generated by default as identity,
+    event_type varchar(255) not null
+        check (event_type in ('CODE_ISSUED', 'INVITATION_CACHED', 'INVITATION_EMAIL_REQUESTED')),
+    payload text not null,
+    attempts integer not null,
+    available_at timestamp(6) not null,
+    created_at timestamp(6) not null,
+    last_error varchar(1000),
+    primary key (id)
+);
@@ -0,0 +1,31 @@
+-- Indexes for the repository lookups on the request path.
+
+-- findByInvitationToken, findWithOrganizationByInvitationToken (accept/cancel cache miss)
+create unique index ux_employee_invitations_token
+    on employee_invitations (invitation_token);
+
+-- findByOrganizationIdAndStatus, findByEmailAndOrganizationIdAndStatus,
+-- existsByEmailAndOrganizationIdAndStatus and the bulk dedup query (email IN ...)
+create index idx_employee_invitations_org_status_email
+    on employee_invitations (organization_id, status, email);
+
+-- Expiry sweeper: only pending rows are ever due, so the index stays small
+create index idx_employee_invitations_pending_expiry
+    on employee_invitations (token_expiry)
+    where status = 'PENDING';
+
+-- findByOwnerId
+create index idx_organizations_owner_id
+    on organizations (owner_id);
+
+-- existsByRegistrationNumber, findByRegistrationNumber
+create index idx_organizations_registration_number
+    on organizations (registration_number);
+
+-- Eager load of User.roles on every user lookup; foreign keys are not indexed automatically
+create index idx_user_roles_user_id
+    on user_roles (user_id);
+
+-- Outbox relay claim: due rows only
+create index idx_outbox_events_available_at
+    on outbox_events (available_at);
@@ -0,0 +1,6 @@
+-- Keyset pagination of an organization's invitations: seeks on (created_at, id) within
+-- (organization_id, status). The included columns let the listing and its count use an
+-- index-only scan, with the email prefix and expiry filters checked on the index entries.
+create index idx_employee_invitations_org_status_created
+    on employee_invitations (organization_id, status, created_at, id)
+    include (email, token_expiry);
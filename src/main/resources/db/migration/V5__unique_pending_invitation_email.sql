@@ -0,0 +1,20 @@
+-- One pending invitation per address and organization. Emails are now stored lower-cased;
+-- normalise existing rows and cancel all but the newest of any pending duplicates first, so
+-- the index can be built.
+update employee_invitations
+set email = lower(trim(email))
+where email <> lower(trim(email));
+
+update employee_invitations i
+set status = 'CANCELLED'
+where i.status = 'PENDING'
+  and exists (select 1
+              from employee_invitations newer
+              where newer.organization_id = i.organization_id
+                and newer.email = i.email
+                and newer.status = 'PENDING'
+                and (newer.created_at, newer.id) > (i.created_at, i.id));
+
+create unique index ux_employee_invitations_pending_email
+    on employee_invitations (organization_id, lower(email))
+    where status = 'PENDING';
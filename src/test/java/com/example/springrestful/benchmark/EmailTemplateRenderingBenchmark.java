@@ -0,0 +1,111 @@
+package com.example.springrestful.benchmark;
+
+import com.example.springrestful.security.EmailTemplateRenderer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders per second for each email template: {@link EmailTemplateRenderer} over a cached
+ * engine against the previous per-email {@code new Context()} path with the template cache off,
+ * plus a parallel render of a 50-email batch.
+ * <p>
+ * Run the {@link #main} method from the test classpath, or after {@code mvn test-compile}:
+ * {@code java -cp target/test-classes:target/classes:<test classpath> org.openjdk.jmh.Main EmailTemplateRenderingBenchmark}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EmailTemplateRenderingBenchmark {
+
+    private static final int BATCH_SIZE = 50;
+
+    @Param({
+            EmailTemplateRenderer.VERIFICATION,
+            EmailTemplateRenderer.PASSWORD_RESET,
+            EmailTemplateRenderer.INVITATION,
+            EmailTemplateRenderer.INVITATION_CANCELLATION
+    })
+    public String template;
+
+    private EmailTemplateRenderer renderer;
+    private SpringTemplateEngine uncachedEngine;
+    private Map<String, Object> variables;
+    private List<Map<String, Object>> batch;
+
+    @Setup
+    public void setUp() {
+        renderer = new EmailTemplateRenderer(engine(true), 4);
+        renderer.warmUp();
+        uncachedEngine = engine(false);
+
+        variables = Map.of(
+                "code", "482913",
+                "expiryMinutes", 10,
+                "organizationName", "Acme Corp",
+                "invitationLink", "https://example.com/invitations/6f1c2a/accept",
+                "expiryDate", "2026-01-01",
+                "email", "user@example.com"
+        );
+        batch = Collections.nCopies(BATCH_SIZE, variables);
+    }
+
+    @TearDown
+    public void tearDown() {
+        renderer.shutdown();
+    }
+
+    @Benchmark
+    public String uncachedNewContext() {
+        Context context = new Context();
+        context.setVariables(new HashMap<>(variables));
+        return uncachedEngine.process(template, context);
+    }
+
+    @Benchmark
+    public String cachedRenderer() {
+        return renderer.render(template, variables);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public Object cachedRendererParallelBatch() {
+        return CompletableFuture.allOf(renderer.renderAll(template, batch).toArray(new CompletableFuture[0])).join();
+    }
+
+    private static SpringTemplateEngine engine(boolean cacheable) {
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix("templates/");
+        resolver.setSuffix(".html");
+        resolver.setTemplateMode(TemplateMode.HTML);
+        resolver.setCharacterEncoding("UTF-8");
+        resolver.setCacheable(cacheable);
+
+        SpringTemplateEngine engine = new SpringTemplateEngine();
+        engine.setTemplateResolver(resolver);
+        return engine;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(EmailTemplateRenderingBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.springrestful.benchmark;
+
+import com.example.springrestful.security.InvitationTokenSigner;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the in-memory check the accept endpoint runs before any Redis or database access:
+ * the legacy-token test followed by {@link InvitationTokenSigner#parse}, for a genuine token
+ * and for a forged one of the right length.
+ * <p>
+ * Run the {@link #main} method from the test classpath, or after {@code mvn test-compile}:
+ * {@code java -cp target/test-classes:target/classes:<test classpath> org.openjdk.jmh.Main InvitationTokenCheckBenchmark}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InvitationTokenCheckBenchmark {
+
+    private InvitationTokenSigner signer;
+    private String genuineToken;
+    private String forgedToken;
+
+    @Setup
+    public void setUp() {
+        signer = new InvitationTokenSigner("benchmark-invitation-secret", "benchmark-jwt-secret", "");
+        genuineToken = signer.sign(42, 7, LocalDateTime.now().plusDays(7).truncatedTo(ChronoUnit.SECONDS));
+        forgedToken = new InvitationTokenSigner("another-secret", "benchmark-jwt-secret", "")
+                .sign(42, 7, LocalDateTime.now().plusDays(7).truncatedTo(ChronoUnit.SECONDS));
+    }
+
+    @Benchmark
+    public Optional<InvitationTokenSigner.Claims> genuineToken() {
+        return check(genuineToken);
+    }
+
+    @Benchmark
+    public Optional<InvitationTokenSigner.Claims> forgedToken() {
+        return check(forgedToken);
+    }
+
+    private Optional<InvitationTokenSigner.Claims> check(String token) {
+        if (signer.acceptsLegacyToken(token)) {
+            return Optional.empty();
+        }
+        return signer.parse(token);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(InvitationTokenCheckBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.springrestful.benchmark;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request cost of reading a JWT in JwtAuthenticationFilter.
+ * <p>
+ * {@code rebuildKeyAndParserPerCall} mirrors the old JwtUtil, which derived the key and built a
+ * parser on every extract call and parsed the token three times per request.
+ * {@code cachedParserParseOnce} mirrors the current JwtUtil with a shared parser and one parse.
+ * <p>
+ * Run the {@link #main} method from the test classpath, or after {@code mvn test-compile}:
+ * {@code java -cp target/test-classes:target/classes:<test classpath> org.openjdk.jmh.Main JwtParsingBenchmark}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtParsingBenchmark {
+
+    private static final String SECRET = "benchmark-secret-key-that-is-at-least-256-bits-long!!";
+
+    private SecretKey cachedKey;
+    private JwtParser cachedParser;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        cachedKey = Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8));
+        cachedParser = Jwts.parserBuilder().setSigningKey(cachedKey).build();
+        token = Jwts.builder()
+                .setSubject("user@example.com")
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1)))
+                .signWith(cachedKey, SignatureAlgorithm.HS256)
+                .compact();
+    }
+
+    @Benchmark
+    public void rebuildKeyAndParserPerCall(Blackhole blackhole) {
+        // extractUsername, then validateToken -> extractUsername + extractExpiration
+        for (int i = 0; i < 3; i++) {
+            SecretKey key = Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8));
+            Claims claims = Jwts.parserBuilder()
+                    .setSigningKey(key)
+                    .build()
+                    .parseClaimsJws(token)
+                    .getBody();
+            blackhole.consume(claims);
+        }
+    }
+
+    @Benchmark
+    public void cachedParserParseOnce(Blackhole blackhole) {
+        Claims claims = cachedParser.parseClaimsJws(token).getBody();
+        blackhole.consume(claims.getSubject());
+        blackhole.consume(claims.getExpiration());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(JwtParsingBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
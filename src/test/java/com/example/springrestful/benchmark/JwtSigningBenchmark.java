@@ -0,0 +1,89 @@
+package com.example.springrestful.benchmark;
+
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.security.KeyPair;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sign and verify throughput for the two algorithms supported by jwt.signing.algorithm,
+ * using parsers built once as JwtUtil does.
+ * <p>
+ * Run the {@link #main} method from the test classpath, or after {@code mvn test-compile}:
+ * {@code java -cp target/test-classes:target/classes:<test classpath> org.openjdk.jmh.Main JwtSigningBenchmark}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtSigningBenchmark {
+
+    private static final String SECRET = "benchmark-secret-key-that-is-at-least-256-bits-long!!";
+
+    private SecretKey hmacKey;
+    private KeyPair ecKeyPair;
+    private JwtParser hs256Parser;
+    private JwtParser es256Parser;
+    private String hs256Token;
+    private String es256Token;
+
+    @Setup
+    public void setUp() {
+        hmacKey = Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8));
+        ecKeyPair = Keys.keyPairFor(SignatureAlgorithm.ES256);
+        hs256Parser = Jwts.parserBuilder().setSigningKey(hmacKey).build();
+        es256Parser = Jwts.parserBuilder().setSigningKey(ecKeyPair.getPublic()).build();
+        hs256Token = hs256Sign();
+        es256Token = es256Sign();
+    }
+
+    @Benchmark
+    public String hs256Sign() {
+        return sign(hmacKey, SignatureAlgorithm.HS256);
+    }
+
+    @Benchmark
+    public String es256Sign() {
+        return sign(ecKeyPair.getPrivate(), SignatureAlgorithm.ES256);
+    }
+
+    @Benchmark
+    public Object hs256Verify() {
+        return hs256Parser.parseClaimsJws(hs256Token).getBody();
+    }
+
+    @Benchmark
+    public Object es256Verify() {
+        return es256Parser.parseClaimsJws(es256Token).getBody();
+    }
+
+    private static String sign(Key key, SignatureAlgorithm algorithm) {
+        return Jwts.builder()
+                .setSubject("user@example.com")
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1)))
+                .signWith(key, algorithm)
+                .compact();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(JwtSigningBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
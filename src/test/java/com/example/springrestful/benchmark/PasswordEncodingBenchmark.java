@@ -0,0 +1,69 @@
+package com.example.springrestful.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode and matches time per cost setting, to pick application.password-hashing.* values
+ * against the login SLO on the target hardware.
+ * <p>
+ * Each {@code cost} is {@code bcrypt:<strength>} or {@code argon2:<memory-kb>:<iterations>}
+ * (parallelism 1, as configured). Pass {@code -p cost=...} to try other values and
+ * {@code -t <threads>} to measure under contention at the hashing pool size. Run the
+ * {@link #main} method from the test classpath, or after {@code mvn test-compile}:
+ * {@code java -cp target/test-classes:target/classes:<test classpath> org.openjdk.jmh.Main PasswordEncodingBenchmark}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PasswordEncodingBenchmark {
+
+    private static final String PASSWORD = "correct-horse-battery-staple";
+
+    @Param({"bcrypt:10", "bcrypt:11", "bcrypt:12", "argon2:19456:2", "argon2:65536:3"})
+    private String cost;
+
+    private PasswordEncoder encoder;
+    private String encoded;
+
+    @Setup
+    public void setUp() {
+        String[] parts = cost.split(":");
+        encoder = switch (parts[0]) {
+            case "bcrypt" -> new BCryptPasswordEncoder(Integer.parseInt(parts[1]));
+            case "argon2" -> new Argon2PasswordEncoder(
+                    16, 32, 1, Integer.parseInt(parts[1]), Integer.parseInt(parts[2])
+            );
+            default -> throw new IllegalArgumentException("Unknown cost: " + cost);
+        };
+        encoded = encoder.encode(PASSWORD);
+    }
+
+    @Benchmark
+    public String encode() {
+        return encoder.encode(PASSWORD);
+    }
+
+    @Benchmark
+    public boolean matches() {
+        return encoder.matches(PASSWORD, encoded);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(PasswordEncodingBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
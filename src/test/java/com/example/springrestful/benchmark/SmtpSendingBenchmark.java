@@ -0,0 +1,85 @@
+package com.example.springrestful.benchmark;
+
+import com.example.springrestful.config.PooledJavaMailSender;
+import com.icegreen.greenmail.util.GreenMail;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Messages per second through an in-process GreenMail SMTP server: a new connection per send
+ * (plain {@link JavaMailSenderImpl}) against {@link PooledJavaMailSender}. Over loopback
+ * without TLS or auth this understates what pooling saves against a real relay.
+ * <p>
+ * Run the {@link #main} method from the test classpath, or after {@code mvn test-compile}:
+ * {@code java -cp target/test-classes:target/classes:<test classpath> org.openjdk.jmh.Main SmtpSendingBenchmark}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SmtpSendingBenchmark {
+
+    private GreenMail greenMail;
+    private JavaMailSenderImpl plainSender;
+    private PooledJavaMailSender pooledSender;
+    private SimpleMailMessage message;
+
+    @Setup
+    public void setUp() {
+        greenMail = new GreenMail(ServerSetupTest.SMTP);
+        greenMail.start();
+        plainSender = configure(new JavaMailSenderImpl());
+        pooledSender = configure(new PooledJavaMailSender(2, 100, 5000));
+
+        message = new SimpleMailMessage();
+        message.setFrom("noreply@example.com");
+        message.setTo("user@example.com");
+        message.setSubject("Email Verification Code");
+        message.setText("Your verification code is: 482913");
+    }
+
+    // GreenMail keeps every message in memory
+    @TearDown(Level.Iteration)
+    public void purge() throws Exception {
+        greenMail.purgeEmailFromAllMailboxes();
+    }
+
+    @TearDown
+    public void tearDown() {
+        pooledSender.destroy();
+        greenMail.stop();
+    }
+
+    @Benchmark
+    public void connectionPerMessage() {
+        plainSender.send(message);
+    }
+
+    @Benchmark
+    public void pooled() {
+        pooledSender.send(message);
+    }
+
+    private static <T extends JavaMailSenderImpl> T configure(T sender) {
+        sender.setHost("localhost");
+        sender.setPort(ServerSetupTest.SMTP.getPort());
+        return sender;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(SmtpSendingBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
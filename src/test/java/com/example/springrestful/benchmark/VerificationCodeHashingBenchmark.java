@@ -0,0 +1,71 @@
+package com.example.springrestful.benchmark;
+
+import com.example.springrestful.security.VerificationCodeHasher;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of hashing and checking a six-digit code: the old BCrypt path against
+ * {@link VerificationCodeHasher}. Only the Redis-free hash/match methods are exercised.
+ * <p>
+ * Run the {@link #main} method from the test classpath, or after {@code mvn test-compile}:
+ * {@code java -cp target/test-classes:target/classes:<test classpath> org.openjdk.jmh.Main VerificationCodeHashingBenchmark}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class VerificationCodeHashingBenchmark {
+
+    private static final String EMAIL = "user@example.com";
+    private static final String CODE = "482913";
+    private static final VerificationCodeHasher.Purpose PURPOSE = VerificationCodeHasher.Purpose.EMAIL_VERIFICATION;
+
+    private BCryptPasswordEncoder bcrypt;
+    private VerificationCodeHasher hasher;
+    private String bcryptHash;
+    private String hmacHash;
+
+    @Setup
+    public void setUp() {
+        bcrypt = new BCryptPasswordEncoder();
+        hasher = new VerificationCodeHasher(null, "benchmark-pepper-that-is-at-least-256-bits-long!!", "benchmark-jwt-secret", 5);
+        bcryptHash = bcrypt.encode(CODE);
+        hmacHash = hasher.hash(PURPOSE, EMAIL, CODE);
+    }
+
+    @Benchmark
+    public String bcryptHash() {
+        return bcrypt.encode(CODE);
+    }
+
+    @Benchmark
+    public boolean bcryptMatch() {
+        return bcrypt.matches(CODE, bcryptHash);
+    }
+
+    @Benchmark
+    public String hmacHash() {
+        return hasher.hash(PURPOSE, EMAIL, CODE);
+    }
+
+    @Benchmark
+    public boolean hmacMatch() {
+        return hasher.matches(PURPOSE, EMAIL, CODE, hmacHash);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(VerificationCodeHashingBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.springrestful.config;
+
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Transport;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Sends through an in-process GreenMail SMTP server and counts the SMTP connections each
+ * sender opens. Throughput is measured in {@code SmtpSendingBenchmark}.
+ */
+class PooledJavaMailSenderTest {
+    private static final int MESSAGES = 50;
+
+    @RegisterExtension
+    static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    private final AtomicInteger pooledConnections = new AtomicInteger();
+    private final PooledJavaMailSender pooledSender = configure(new PooledJavaMailSender(2, 20, 5000) {
+        @Override
+        protected Transport connectTransport() throws MessagingException {
+            pooledConnections.incrementAndGet();
+            return super.connectTransport();
+        }
+    });
+
+    @AfterEach
+    void closePool() {
+        pooledSender.destroy();
+    }
+
+    @Test
+    void reusesPooledConnectionsAcrossSends() {
+        AtomicInteger plainConnections = new AtomicInteger();
+        JavaMailSenderImpl plainSender = configure(new JavaMailSenderImpl() {
+            @Override
+            protected Transport connectTransport() throws MessagingException {
+                plainConnections.incrementAndGet();
+                return super.connectTransport();
+            }
+        });
+
+        sendIndividually(plainSender, MESSAGES);
+        sendIndividually(pooledSender, MESSAGES);
+
+        assertEquals(2 * MESSAGES, greenMail.getReceivedMessages().length);
+        assertEquals(MESSAGES, plainConnections.get());
+        // One connection, recycled every maxMessagesPerConnection (20) messages
+        assertEquals(3, pooledConnections.get());
+    }
+
+    @Test
+    void sendsBatchOverOneConnection() {
+        SimpleMailMessage[] batch = new SimpleMailMessage[20];
+        for (int i = 0; i < batch.length; i++) {
+            batch[i] = message(i);
+        }
+
+        pooledSender.send(batch);
+
+        assertEquals(batch.length, greenMail.getReceivedMessages().length);
+        assertEquals(1, pooledConnections.get());
+    }
+
+    @Test
+    void reconnectsAfterServerDropsConnection() {
+        pooledSender.send(message(1));
+
+        // Restarting the server closes every open connection held by the pool
+        greenMail.reset();
+        pooledSender.send(message(2));
+
+        assertEquals(1, greenMail.getReceivedMessages().length);
+        assertEquals(2, pooledConnections.get());
+    }
+
+    private static void sendIndividually(JavaMailSenderImpl sender, int count) {
+        for (int i = 0; i < count; i++) {
+            sender.send(message(i));
+        }
+    }
+
+    private static SimpleMailMessage message(int i) {
+        SimpleMailMessage message = new SimpleMailMessage();
+        message.setFrom("noreply@example.com");
+        message.setTo("user" + i + "@example.com");
+        message.setSubject("Email Verification Code");
+        message.setText("Your verification code is: " + (100000 + i));
+        return message;
+    }
+
+    private static <T extends JavaMailSenderImpl> T configure(T sender) {
+        sender.setHost("localhost");
+        sender.setPort(ServerSetupTest.SMTP.getPort());
+        return sender;
+    }
+}
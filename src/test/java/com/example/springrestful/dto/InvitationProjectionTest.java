@@ -0,0 +1,58 @@
+package com.example.springrestful.dto;
+
+import com.example.springrestful.entity.EmployeeInvitation;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InvitationProjectionTest {
+    private final LocalDateTime expiry = LocalDateTime.now().plusDays(7).truncatedTo(ChronoUnit.SECONDS);
+
+    @Test
+    void roundTripsAnInvitationOfAnUnnamedOrganization() {
+        Map<String, String> hash = projection(null).toHash();
+
+        assertFalse(hash.containsKey("organizationName"));
+        assertFalse(hash.containsValue(null));
+        InvitationProjection read = InvitationProjection.fromHash(new HashMap<>(hash)).orElseThrow();
+        assertNull(read.getOrganizationName());
+        assertEquals(7L, read.getOrganizationId());
+        assertEquals(expiry, read.getTokenExpiry());
+    }
+
+    @Test
+    void roundTripsTheOrganizationName() {
+        InvitationProjection read = InvitationProjection.fromHash(new HashMap<>(projection("Acme Corp").toHash()))
+                .orElseThrow();
+
+        assertEquals("Acme Corp", read.getOrganizationName());
+    }
+
+    @Test
+    void missingRequiredFieldIsAMiss() {
+        Map<Object, Object> hash = new HashMap<>(projection("Acme Corp").toHash());
+        hash.remove("email");
+
+        assertTrue(InvitationProjection.fromHash(hash).isEmpty());
+    }
+
+    private InvitationProjection projection(String organizationName) {
+        return InvitationProjection.builder()
+                .id(42L)
+                .token("token-1")
+                .email("alice@example.com")
+                .organizationId(7L)
+                .organizationName(organizationName)
+                .status(EmployeeInvitation.InvitationStatus.PENDING)
+                .tokenExpiry(expiry)
+                .build();
+    }
+}
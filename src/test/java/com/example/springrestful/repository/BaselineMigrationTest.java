@@ -0,0 +1,86 @@
+package com.example.springrestful.repository;
+
+import com.example.springrestful.SpringRestfulApplication;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Upgrades a database that {@code ddl-auto: update} built before Flyway was introduced: the
+ * tables exist but there is no schema history. Flyway baselines it at version 1, applies the
+ * later migrations, and Hibernate then validates the entities against the result.
+ */
+@DataJpaTest(properties = "spring.jpa.hibernate.ddl-auto=validate")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ContextConfiguration(classes = SpringRestfulApplication.class)
+class BaselineMigrationTest {
+    private static final EmbeddedPostgres POSTGRES = startLegacyDatabase();
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> POSTGRES.getJdbcUrl("postgres", "postgres"));
+        registry.add("spring.datasource.username", () -> "postgres");
+        registry.add("spring.datasource.password", () -> "");
+    }
+
+    @AfterAll
+    static void stopPostgres() throws IOException {
+        POSTGRES.close();
+    }
+
+    @Test
+    void baselinesAndAppliesTheLaterMigrations() {
+        List<String> history = jdbcTemplate.queryForList(
+                "SELECT version || ' ' || type FROM flyway_schema_history WHERE success ORDER BY installed_rank",
+                String.class);
+
+        assertEquals(List.of("1 BASELINE", "2 SQL", "3 SQL", "4 SQL", "5 SQL"), history);
+    }
+
+    @Test
+    void existingInvitationsAreNormalisedAndDeduplicated() {
+        List<String> invitations = jdbcTemplate.queryForList(
+                "SELECT email || ' ' || status FROM employee_invitations ORDER BY id", String.class);
+
+        assertEquals(List.of("alice@example.com CANCELLED", "alice@example.com PENDING"), invitations);
+    }
+
+    // The schema as ddl-auto left it, with rows the later migrations must carry over
+    private static EmbeddedPostgres startLegacyDatabase() {
+        try {
+            EmbeddedPostgres postgres = EmbeddedPostgres.builder().start();
+            try (Connection connection = postgres.getPostgresDatabase().getConnection();
+                 Statement statement = connection.createStatement()) {
+                ScriptUtils.executeSqlScript(connection, new ClassPathResource("db/migration/V1__baseline.sql"));
+                statement.execute("INSERT INTO organizations (id, name) VALUES (1, 'Acme Corp')");
+                statement.execute("INSERT INTO employee_invitations " +
+                        "(email, invitation_token, token_expiry, organization_id, status, created_at) VALUES " +
+                        "('Alice@Example.com', 'token-1', now() + interval '7 days', 1, 'PENDING', now() - interval '1 day'), " +
+                        "('alice@example.com', 'token-2', now() + interval '7 days', 1, 'PENDING', now())");
+            }
+            return postgres;
+        } catch (IOException | SQLException e) {
+            throw new IllegalStateException("Could not start embedded PostgreSQL", e);
+        }
+    }
+}
@@ -0,0 +1,336 @@
+package com.example.springrestful.repository;
+
+import com.example.springrestful.SpringRestfulApplication;
+import com.example.springrestful.entity.EmployeeInvitation;
+import com.example.springrestful.service.InvitationExpirySweeper;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.transaction.BeforeTransaction;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Applies the Flyway migrations to an embedded PostgreSQL, lets Hibernate validate the entities
+ * against the result, and checks that every query the application issues is served by the index
+ * meant for it.
+ * <p>
+ * Each case calls the real repository method (or the JDBC caller), records the SQL and the
+ * bound parameters that reach the driver, and explains them with the same parameters, so the
+ * plans follow the generated SQL rather than a copy of it. The tables hold an analyzed data set
+ * shaped like production, because on empty tables the planner's choice between indexes is a
+ * tie. Sequential scans are disabled so the check does not depend on table size. Derived
+ * queries nothing calls ({@code findByPasswordResetToken}, {@code existsByEmail}) are left out.
+ */
+@DataJpaTest(properties = "spring.jpa.hibernate.ddl-auto=validate")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ContextConfiguration(classes = SpringRestfulApplication.class)
+@Import(QueryPlanTest.StatementRecorder.class)
+class QueryPlanTest {
+    private static final EmbeddedPostgres POSTGRES = startPostgres();
+    private static final LocalDateTime NOW = LocalDateTime.now();
+    private static final LocalDateTime EARLIEST = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime LATEST = LocalDateTime.of(9999, 12, 31, 0, 0);
+    private static final EmployeeInvitation.InvitationStatus PENDING = EmployeeInvitation.InvitationStatus.PENDING;
+
+    private static boolean fixtureLoaded;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EmployeeInvitationRepository invitationRepository;
+
+    @Autowired
+    private OrganizationRepository organizationRepository;
+
+    @Autowired
+    private AuthRepository authRepository;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> POSTGRES.getJdbcUrl("postgres", "postgres"));
+        registry.add("spring.datasource.username", () -> "postgres");
+        registry.add("spring.datasource.password", () -> "");
+    }
+
+    @AfterAll
+    static void stopPostgres() throws IOException {
+        POSTGRES.close();
+    }
+
+    // Before the test transaction opens, since its snapshot would keep VACUUM from marking pages
+    @BeforeTransaction
+    void loadFixtureOnce() {
+        if (!fixtureLoaded) {
+            loadFixture();
+            fixtureLoaded = true;
+        }
+    }
+
+    @BeforeEach
+    void clearRecordedStatements() {
+        StatementRecorder.STATEMENTS.clear();
+    }
+
+    static Stream<Arguments> queries() {
+        return Stream.of(
+                query("EmployeeInvitationRepository.findByInvitationToken",
+                        test -> test.invitationRepository.findByInvitationToken("token-100"),
+                        "ux_employee_invitations_token"),
+                query("EmployeeInvitationRepository.findWithOrganizationByInvitationToken",
+                        test -> test.invitationRepository.findWithOrganizationByInvitationToken("token-100"),
+                        "ux_employee_invitations_token", "organizations_pkey"),
+                query("EmployeeInvitationRepository.updateStatusIfCurrent",
+                        test -> test.invitationRepository.updateStatusIfCurrent(
+                                1L, PENDING, EmployeeInvitation.InvitationStatus.ACCEPTED, NOW),
+                        "employee_invitations_pkey"),
+                query("EmployeeInvitationRepository.findPageAfter",
+                        test -> test.invitationRepository.findPageAfter(1L, PENDING, "user%",
+                                EARLIEST, LATEST, EARLIEST, 0L, Limit.of(21)),
+                        "idx_employee_invitations_org_status_created"),
+                query("EmployeeInvitationRepository.countMatching",
+                        test -> test.invitationRepository.countMatching(1L, PENDING, "user%",
+                                EARLIEST, LATEST),
+                        "idx_employee_invitations_org_status_created"),
+                query("EmployeeInvitationRepository.existsByEmailAndOrganizationIdAndStatus",
+                        test -> test.invitationRepository.existsByEmailAndOrganizationIdAndStatus(
+                                "user200@example.com", 1L, PENDING),
+                        "idx_employee_invitations_org_status_email"),
+                query("EmployeeInvitationRepository.findByEmailAndOrganizationIdAndStatus",
+                        test -> test.invitationRepository.findByEmailAndOrganizationIdAndStatus(
+                                "user200@example.com", 1L, PENDING),
+                        "idx_employee_invitations_org_status_email"),
+                query("EmployeeInvitationRepository.findByEmailAndOrganizationId",
+                        test -> test.invitationRepository.findByEmailAndOrganizationId("user200@example.com", 1L),
+                        "idx_employee_invitations_org_status_email"),
+                query("EmployeeInvitationRepository.findEmailsByOrganizationIdAndStatusAndEmailIn",
+                        test -> test.invitationRepository.findEmailsByOrganizationIdAndStatusAndEmailIn(
+                                1L, PENDING, List.of("user200@example.com", "user400@example.com")),
+                        "idx_employee_invitations_org_status_email"),
+                query("InvitationExpirySweeper.sweep",
+                        QueryPlanTest::sweepExpiredInvitations,
+                        "idx_employee_invitations_pending_expiry"),
+                query("OrganizationRepository.findByOwnerId",
+                        test -> test.organizationRepository.findByOwnerId(1L),
+                        "idx_organizations_owner_id"),
+                query("OrganizationRepository.existsByRegistrationNumber",
+                        test -> test.organizationRepository.existsByRegistrationNumber("REG-1"),
+                        "idx_organizations_registration_number"),
+                query("OrganizationRepository.findByRegistrationNumber",
+                        test -> test.organizationRepository.findByRegistrationNumber("REG-1"),
+                        "idx_organizations_registration_number"),
+                query("AuthRepository.findByEmail",
+                        test -> test.authRepository.findByEmail("user1@example.com"),
+                        "users_email_key", "idx_user_roles_user_id"),
+                query("AuthRepository.findByUsername",
+                        test -> test.authRepository.findByUsername("user1"),
+                        "users_username_key", "idx_user_roles_user_id"),
+                query("OutboxEventRepository.claimBatch",
+                        test -> test.outboxEventRepository.claimBatch(NOW, 100),
+                        "idx_outbox_events_available_at")
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("queries")
+    void queryUsesItsIndex(String query, Consumer<QueryPlanTest> call, List<String> expectedIndexes) {
+        call.accept(this);
+        List<RecordedStatement> statements = List.copyOf(StatementRecorder.STATEMENTS);
+        assertFalse(statements.isEmpty(), query + " sent no SQL");
+
+        jdbcTemplate.execute("SET LOCAL enable_seqscan = off");
+        List<String> plans = new ArrayList<>();
+        for (RecordedStatement statement : statements) {
+            String plan = String.join("\n", explain(statement));
+            assertFalse(plan.contains("Seq Scan"),
+                    () -> query + " needs a sequential scan:\n" + statement.sql() + "\n" + plan);
+            plans.add(statement.sql() + "\n" + plan);
+        }
+
+        String allPlans = String.join("\n\n", plans);
+        for (String index : expectedIndexes) {
+            assertTrue(allPlans.contains(" " + index + " "), () -> query + " does not use " + index + ":\n" + allPlans);
+        }
+    }
+
+    @Test
+    void migrationsAreApplied() {
+        List<String> versions = jdbcTemplate.queryForList(
+                "SELECT version FROM flyway_schema_history WHERE success ORDER BY installed_rank", String.class);
+
+        assertEquals(List.of("1", "2", "3", "4", "5"), versions);
+    }
+
+    // The sweeper logs and swallows failures, so check that it got as far as evicting the batch
+    private void sweepExpiredInvitations() {
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        new InvitationExpirySweeper(jdbcTemplate, redisTemplate, transactionManager, 500, 1).sweep();
+
+        verify(redisTemplate).executePipelined(any(SessionCallback.class));
+    }
+
+    // Binds the recorded parameters again, so the planner sees the same values as the call did
+    private List<String> explain(RecordedStatement statement) {
+        return jdbcTemplate.query("EXPLAIN " + statement.sql(), preparedStatement -> {
+            for (Binding binding : statement.bindings()) {
+                try {
+                    binding.setter().invoke(preparedStatement, binding.args());
+                } catch (ReflectiveOperationException e) {
+                    throw new IllegalStateException("Could not bind " + binding.setter().getName(), e);
+                }
+            }
+        }, (rs, rowNum) -> rs.getString(1));
+    }
+
+    /**
+     * 200 organizations and 50,000 invitations. Organization 1 has just bulk-invited 10,000
+     * people, which is when the per-email lookups must not walk its pending invitations; elsewhere
+     * one in ten is pending. The outbox holds a backlog of events backing off after failed
+     * deliveries and a few due ones, which is when the relay claim must not walk the table in id
+     * order.
+     */
+    private static void loadFixture() {
+        // Autocommit, so the rows and statistics outlive the rolled back test transactions.
+        // VACUUM sets the visibility map as autovacuum would, so index-only scans are costed as
+        // such; it only marks pages whose commits are flushed, and the embedded server defaults to
+        // asynchronous commit.
+        SingleConnectionDataSource dataSource = new SingleConnectionDataSource(
+                POSTGRES.getJdbcUrl("postgres", "postgres"), "postgres", "", true);
+        JdbcTemplate fixture = new JdbcTemplate(dataSource);
+        fixture.execute("SET synchronous_commit = on");
+        fixture.execute("INSERT INTO users (email, username, password, email_verified, two_factor_auth_enabled) " +
+                "SELECT 'user' || n || '@example.com', 'user' || n, 'hash', true, false FROM generate_series(1, 1000) n");
+        fixture.execute("INSERT INTO user_roles (user_id, role) SELECT id, 'EMPLOYEE' FROM users");
+        fixture.execute("INSERT INTO organizations (name, registration_number, owner_id) " +
+                "SELECT 'Organization ' || n, 'REG-' || n, n FROM generate_series(1, 200) n");
+        fixture.execute("INSERT INTO employee_invitations " +
+                "(email, invitation_token, token_expiry, organization_id, status, created_at) " +
+                "SELECT 'user' || n || '@example.com', 'token-' || n, now() - n * interval '1 minute' + interval '7 days', " +
+                "CASE WHEN n <= 10000 THEN 1 ELSE n % 199 + 2 END, " +
+                "CASE WHEN n <= 10000 OR n % 10 = 0 THEN 'PENDING' ELSE 'ACCEPTED' END, now() - n * interval '1 minute' " +
+                "FROM generate_series(1, 50000) n");
+        fixture.execute("INSERT INTO outbox_events (event_type, payload, attempts, available_at, created_at) " +
+                "SELECT 'INVITATION_EMAIL_REQUESTED', '{}', CASE WHEN n <= 50 THEN 0 ELSE 3 END, " +
+                "CASE WHEN n <= 50 THEN now() - interval '1 second' ELSE now() + n * interval '1 second' END, now() " +
+                "FROM generate_series(1, 5000) n");
+        fixture.execute("VACUUM ANALYZE");
+        dataSource.destroy();
+    }
+
+    private static Arguments query(String name, Consumer<QueryPlanTest> call, String... expectedIndexes) {
+        return Arguments.of(name, call, List.of(expectedIndexes));
+    }
+
+    private static EmbeddedPostgres startPostgres() {
+        try {
+            return EmbeddedPostgres.builder().start();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not start embedded PostgreSQL", e);
+        }
+    }
+
+    record Binding(Method setter, Object[] args) {
+    }
+
+    record RecordedStatement(String sql, List<Binding> bindings) {
+    }
+
+    /**
+     * Records every statement the application prepares, whether it comes from Hibernate or
+     * {@link JdbcTemplate}, with the parameters bound to it. Statements run by the test itself
+     * are plain, not prepared.
+     */
+    static class StatementRecorder implements BeanPostProcessor {
+        static final List<RecordedStatement> STATEMENTS = new CopyOnWriteArrayList<>();
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (!(bean instanceof DataSource dataSource)) {
+                return bean;
+            }
+            return new DelegatingDataSource(dataSource) {
+                @Override
+                public Connection getConnection() throws SQLException {
+                    return recording(super.getConnection());
+                }
+            };
+        }
+
+        private static Connection recording(Connection connection) {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        Object result = invoke(connection, method, args);
+                        if (result instanceof PreparedStatement preparedStatement && args[0] instanceof String sql) {
+                            RecordedStatement statement = new RecordedStatement(sql, new CopyOnWriteArrayList<>());
+                            STATEMENTS.add(statement);
+                            return recording(preparedStatement, method.getReturnType(), statement);
+                        }
+                        return result;
+                    });
+        }
+
+        private static Object recording(PreparedStatement preparedStatement, Class<?> type, RecordedStatement statement) {
+            return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+                // setString(index, value), setObject(index, value, type), setNull(index, type)...
+                if (method.getName().startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                    statement.bindings().add(new Binding(method, args));
+                }
+                return invoke(preparedStatement, method, args);
+            });
+        }
+
+        private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
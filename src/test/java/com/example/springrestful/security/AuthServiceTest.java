@@ -0,0 +1,162 @@
+package com.example.springrestful.security;
+
+import com.example.springrestful.dto.AuthResponse;
+import com.example.springrestful.entity.User;
+import com.example.springrestful.enums.UserRole;
+import com.example.springrestful.exception.UserAuthenticationException;
+import com.example.springrestful.repository.AuthRepository;
+import com.example.springrestful.service.impl.CustomUserDetailsImpl;
+import com.example.springrestful.util.JwtUtil;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Drives the token paths of {@link AuthService} with a real {@link JwtUtil}, session versions
+ * and revocation registry against an embedded redis-server. Only the database is mocked.
+ */
+class AuthServiceTest {
+    private static final String SECRET = "test-secret-that-is-long-enough-for-hs256-signing";
+    private static final String EMAIL = "alice@example.com";
+
+    private static RedisServer redisServer;
+    private static LettuceConnectionFactory connectionFactory;
+    private static RedisTemplate<String, String> redisTemplate;
+    private static RedisMessageListenerContainer listenerContainer;
+
+    private final AuthRepository authRepository = mock(AuthRepository.class);
+    private final PasswordEncoder passwordEncoder = new BCryptPasswordEncoder(4);
+
+    private JwtUtil jwtUtil;
+    private AuthService authService;
+    private User user;
+
+    @BeforeAll
+    static void startRedis() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        redisServer = new RedisServer(port);
+        redisServer.start();
+
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("localhost", port));
+        connectionFactory.afterPropertiesSet();
+
+        redisTemplate = new RedisTemplate<>();
+        redisTemplate.setConnectionFactory(connectionFactory);
+        StringRedisSerializer serializer = new StringRedisSerializer();
+        redisTemplate.setKeySerializer(serializer);
+        redisTemplate.setValueSerializer(serializer);
+        redisTemplate.setHashKeySerializer(serializer);
+        redisTemplate.setHashValueSerializer(serializer);
+        redisTemplate.afterPropertiesSet();
+
+        listenerContainer = new RedisMessageListenerContainer();
+        listenerContainer.setConnectionFactory(connectionFactory);
+        listenerContainer.afterPropertiesSet();
+        listenerContainer.start();
+    }
+
+    @AfterAll
+    static void stopRedis() throws Exception {
+        listenerContainer.destroy();
+        connectionFactory.destroy();
+        redisServer.stop();
+    }
+
+    @BeforeEach
+    void setUp() {
+        redisTemplate.execute(connection -> {
+            connection.serverCommands().flushAll();
+            return null;
+        }, true);
+
+        SessionVersionRegistry sessionVersionRegistry = new SessionVersionRegistry(redisTemplate, listenerContainer, 1000, 60);
+        ReflectionTestUtils.setField(sessionVersionRegistry, "sessionVersionPrefix", "user_session_version:");
+        RevokedTokenRegistry revokedTokenRegistry = new RevokedTokenRegistry(redisTemplate, listenerContainer);
+        ReflectionTestUtils.setField(revokedTokenRegistry, "blacklistPrefix", "blacklisted_token:");
+        JwtKeyManager keyManager = new JwtKeyManager(redisTemplate, SECRET, "HS256", 86_400_000, 604_800_000, "");
+
+        jwtUtil = new JwtUtil(revokedTokenRegistry, sessionVersionRegistry, keyManager);
+        ReflectionTestUtils.setField(jwtUtil, "accessTokenExpiration", 900_000L);
+        ReflectionTestUtils.setField(jwtUtil, "refreshTokenExpiration", 604_800_000L);
+
+        authService = new AuthService(
+                authRepository,
+                null,
+                passwordEncoder,
+                jwtUtil,
+                null,
+                null,
+                redisTemplate,
+                mock(UserDetailsCache.class),
+                null,
+                null
+        );
+
+        user = User.builder()
+                .id(1L)
+                .email(EMAIL)
+                .username("alice")
+                .password(passwordEncoder.encode("old-password"))
+                .emailVerified(true)
+                .roles(Set.of(UserRole.ADMIN))
+                .build();
+        when(authRepository.findByEmail(EMAIL)).thenReturn(Optional.of(user));
+    }
+
+    @Test
+    void refreshExchangesARefreshTokenOnce() {
+        String refreshToken = jwtUtil.generateRefreshToken(new CustomUserDetailsImpl(user));
+
+        AuthResponse response = authService.refreshToken(refreshToken);
+
+        assertTrue(jwtUtil.validateToken(response.getAccessToken()).isPresent());
+        // The presented refresh token is revoked by the exchange
+        assertThrows(UserAuthenticationException.class, () -> authService.refreshToken(refreshToken));
+    }
+
+    @Test
+    void refreshRejectsAnAccessToken() {
+        String accessToken = jwtUtil.generateToken(new CustomUserDetailsImpl(user));
+
+        assertThrows(UserAuthenticationException.class, () -> authService.refreshToken(accessToken));
+        assertTrue(jwtUtil.validateToken(accessToken).isPresent());
+    }
+
+    @Test
+    void changingThePasswordRevokesEarlierTokens() {
+        CustomUserDetailsImpl userDetails = new CustomUserDetailsImpl(user);
+        String accessToken = jwtUtil.generateToken(userDetails);
+        String refreshToken = jwtUtil.generateRefreshToken(userDetails);
+        assertTrue(jwtUtil.validateToken(accessToken).isPresent());
+
+        authService.changePassword(EMAIL, "old-password", "new-password");
+
+        assertFalse(jwtUtil.validateToken(accessToken).isPresent());
+        assertFalse(jwtUtil.validateToken(refreshToken).isPresent());
+        assertTrue(jwtUtil.validateToken(jwtUtil.generateToken(userDetails)).isPresent());
+    }
+}
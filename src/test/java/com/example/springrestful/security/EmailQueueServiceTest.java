@@ -0,0 +1,205 @@
+package com.example.springrestful.security;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.lettuce.core.cluster.SlotHash;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the stream queue against an embedded redis-server, so the Lua scripts and consumer
+ * group commands are exercised for real.
+ */
+class EmailQueueServiceTest {
+    private static final Duration POLL = Duration.ofMillis(100);
+    private static final int PARTITIONS = 3;
+    private static final int MAX_ATTEMPTS = 3;
+
+    private static RedisServer redisServer;
+    private static LettuceConnectionFactory connectionFactory;
+    private static RedisTemplate<String, String> redisTemplate;
+
+    private EmailQueueService queueService;
+
+    @BeforeAll
+    static void startRedis() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        redisServer = new RedisServer(port);
+        redisServer.start();
+
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("localhost", port));
+        connectionFactory.afterPropertiesSet();
+
+        redisTemplate = new RedisTemplate<>();
+        redisTemplate.setConnectionFactory(connectionFactory);
+        StringRedisSerializer serializer = new StringRedisSerializer();
+        redisTemplate.setKeySerializer(serializer);
+        redisTemplate.setValueSerializer(serializer);
+        redisTemplate.setHashKeySerializer(serializer);
+        redisTemplate.setHashValueSerializer(serializer);
+        redisTemplate.afterPropertiesSet();
+    }
+
+    @AfterAll
+    static void stopRedis() throws IOException {
+        connectionFactory.destroy();
+        redisServer.stop();
+    }
+
+    @BeforeEach
+    void setUp() {
+        redisTemplate.execute(connection -> {
+            connection.serverCommands().flushAll();
+            return null;
+        }, true);
+        // 1 ms base delay keeps the backoff short enough to wait out in a test
+        queueService = new EmailQueueService(redisTemplate, new ObjectMapper(), PARTITIONS, MAX_ATTEMPTS, 1, 10);
+        queueService.ensureGroups(MailQueue.VERIFICATION);
+    }
+
+    @Test
+    void deliversEachMessageToOneConsumerAndDeletesItOnAck() {
+        for (int i = 0; i < 10; i++) {
+            queueService.queueEmail("user" + i + "@example.com", "12345" + i);
+        }
+        assertEquals(10, queueService.queueDepth(MailQueue.VERIFICATION));
+
+        List<MapRecord<String, String, String>> first = queueService.take(MailQueue.VERIFICATION, "a", POLL, 6);
+        List<MapRecord<String, String, String>> second = queueService.take(MailQueue.VERIFICATION, "b", POLL, 10);
+        assertEquals(10, first.size() + second.size());
+        assertEquals(10, queueService.pendingCount(MailQueue.VERIFICATION));
+        assertEquals(0, queueService.queueDepth(MailQueue.VERIFICATION));
+
+        first.forEach(record -> queueService.acknowledge(MailQueue.VERIFICATION, record));
+        second.forEach(record -> queueService.acknowledge(MailQueue.VERIFICATION, record));
+        assertEquals(0, queueService.pendingCount(MailQueue.VERIFICATION));
+        assertTrue(queueService.take(MailQueue.VERIFICATION, "a", POLL, 10).isEmpty());
+    }
+
+    @Test
+    void retriesWithBackoffThenDeadLettersAndReplays() throws InterruptedException {
+        queueService.queueEmail("user@example.com", "123456");
+
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            MapRecord<String, String, String> record = takeOne("a");
+            assertEquals(String.valueOf(attempt - 1), record.getValue().get(EmailQueueService.ATTEMPTS_FIELD));
+            queueService.fail(MailQueue.VERIFICATION, record, new IllegalStateException("SMTP down"));
+            assertEquals(0, queueService.pendingCount(MailQueue.VERIFICATION));
+
+            if (attempt < MAX_ATTEMPTS) {
+                assertEquals(1, queueService.retryDepth(MailQueue.VERIFICATION));
+                Thread.sleep(20);
+                assertEquals(1, queueService.promoteDueRetries(MailQueue.VERIFICATION, 10));
+            }
+        }
+
+        assertEquals(0, queueService.retryDepth(MailQueue.VERIFICATION));
+        List<Map<String, String>> deadLetters = queueService.deadLetters(MailQueue.VERIFICATION, 0, 10);
+        assertEquals(1, deadLetters.size());
+        assertEquals("SMTP down", deadLetters.get(0).get("lastError"));
+
+        assertEquals(1, queueService.replayDeadLetters(MailQueue.VERIFICATION, 10));
+        MapRecord<String, String, String> replayed = takeOne("b");
+        assertEquals("user@example.com", replayed.getValue().get("toEmail"));
+        assertEquals("0", replayed.getValue().get(EmailQueueService.ATTEMPTS_FIELD));
+    }
+
+    @Test
+    void reclaimsEntriesAbandonedByADeadConsumer() throws InterruptedException {
+        queueService.queueEmail("user@example.com", "123456");
+        MapRecord<String, String, String> abandoned = takeOne("crashed");
+
+        Thread.sleep(50);
+        assertEquals(1, queueService.reclaimAbandoned(MailQueue.VERIFICATION, Duration.ofMillis(10), 100));
+
+        MapRecord<String, String, String> redelivered = takeOne("survivor");
+        assertEquals(abandoned.getValue().get(EmailQueueService.ID_FIELD),
+                redelivered.getValue().get(EmailQueueService.ID_FIELD));
+        assertEquals("1", redelivered.getValue().get(EmailQueueService.ATTEMPTS_FIELD));
+        queueService.acknowledge(MailQueue.VERIFICATION, redelivered);
+        assertEquals(0, queueService.pendingCount(MailQueue.VERIFICATION));
+    }
+
+    @Test
+    void deadLettersAMessageThatKeepsKillingItsConsumer() throws InterruptedException {
+        queueService.queueEmail("user@example.com", "123456");
+
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            MapRecord<String, String, String> record = takeOne("crashed-" + attempt);
+            assertEquals(String.valueOf(attempt - 1), record.getValue().get(EmailQueueService.ATTEMPTS_FIELD));
+            Thread.sleep(50);
+            assertEquals(1, queueService.reclaimAbandoned(MailQueue.VERIFICATION, Duration.ofMillis(10), 100));
+        }
+
+        assertTrue(queueService.take(MailQueue.VERIFICATION, "survivor", POLL, 1).isEmpty());
+        assertEquals(0, queueService.pendingCount(MailQueue.VERIFICATION));
+        List<Map<String, String>> deadLetters = queueService.deadLetters(MailQueue.VERIFICATION, 0, 10);
+        assertEquals(1, deadLetters.size());
+        assertEquals("user@example.com", deadLetters.get(0).get("toEmail"));
+        assertEquals("0", deadLetters.get(0).get(EmailQueueService.ATTEMPTS_FIELD));
+
+        assertEquals(1, queueService.replayDeadLetters(MailQueue.VERIFICATION, 10));
+        assertEquals("user@example.com", takeOne("survivor").getValue().get("toEmail"));
+    }
+
+    @Test
+    void keysOfAQueueShareOneClusterSlot() {
+        for (MailQueue queue : MailQueue.values()) {
+            Set<Integer> slots = new HashSet<>();
+            for (int partition = 0; partition < PARTITIONS; partition++) {
+                slots.add(SlotHash.getSlot(queue.streamKey(partition)));
+            }
+            slots.add(SlotHash.getSlot(queue.retryKey()));
+            slots.add(SlotHash.getSlot(queue.deadLetterKey()));
+
+            assertEquals(1, slots.size(), queue.name());
+        }
+    }
+
+    @Test
+    void movesEntriesLeftUnderTheLegacyKeys() {
+        redisTemplate.execute(connection -> {
+            connection.serverCommands().flushAll();
+            return null;
+        }, true);
+        String legacyStream = MailQueue.VERIFICATION.legacyKey(MailQueue.VERIFICATION.streamKey(1));
+        assertEquals("email:stream:1", legacyStream);
+        redisTemplate.opsForStream().add(MapRecord.create(legacyStream, Map.of(
+                "toEmail", "user@example.com", EmailQueueService.ID_FIELD, "legacy", EmailQueueService.ATTEMPTS_FIELD, "0")));
+        redisTemplate.opsForList().rightPush("email:dead", "{\"toEmail\":\"dead@example.com\"}");
+
+        queueService.ensureGroups(MailQueue.VERIFICATION);
+
+        assertEquals("user@example.com", takeOne("a").getValue().get("toEmail"));
+        assertEquals(1, queueService.deadLetterDepth(MailQueue.VERIFICATION));
+        assertFalse(redisTemplate.hasKey(legacyStream));
+    }
+
+    private MapRecord<String, String, String> takeOne(String consumerId) {
+        List<MapRecord<String, String, String>> records = queueService.take(MailQueue.VERIFICATION, consumerId, POLL, 1);
+        assertEquals(1, records.size());
+        return records.get(0);
+    }
+}
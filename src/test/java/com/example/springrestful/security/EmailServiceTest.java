@@ -0,0 +1,86 @@
+package com.example.springrestful.security;
+
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeMessage;
+import com.example.springrestful.util.EmailUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Renders the real templates and hands the messages to a mocked {@link JavaMailSender}.
+ */
+class EmailServiceTest {
+    private final JavaMailSender mailSender = mock(JavaMailSender.class);
+    private final EmailTemplateRenderer renderer = new EmailTemplateRenderer(templateEngine(), 2);
+    private final EmailService emailService = new EmailService(mailSender, renderer);
+
+    @AfterEach
+    void shutdownRenderer() {
+        renderer.shutdown();
+    }
+
+    @Test
+    void malformedEntryFailsOnlyItsOwnMessage() {
+        when(mailSender.createMimeMessage()).thenAnswer(invocation -> new MimeMessage(Session.getInstance(new Properties())));
+        ReflectionTestUtils.setField(emailService, "fromEmail", "noreply@example.com");
+        Map<String, String> missingCode = new HashMap<>();
+        missingCode.put("toEmail", "bob@example.com");
+
+        Map<Integer, Exception> failures = emailService.sendVerificationEmails(List.of(
+                Map.of("toEmail", "alice@example.com", "verificationCode", "482913"),
+                missingCode,
+                Map.of("toEmail", "carol@example.com", "verificationCode", "123456", "purpose", "PASSWORD_RESET")
+        ));
+
+        assertEquals(List.of(1), List.copyOf(failures.keySet()));
+        assertInstanceOf(IllegalArgumentException.class, failures.get(1));
+        ArgumentCaptor<MimeMessage[]> sent = ArgumentCaptor.forClass(MimeMessage[].class);
+        verify(mailSender).send(sent.capture());
+        assertEquals(2, sent.getValue().length);
+    }
+
+    @Test
+    void invitationForAnUnnamedOrganizationIsSent() throws Exception {
+        when(mailSender.createMimeMessage()).thenAnswer(invocation -> new MimeMessage(Session.getInstance(new Properties())));
+        ReflectionTestUtils.setField(emailService, "fromEmail", "noreply@example.com");
+        ReflectionTestUtils.setField(emailService, "invitationBaseUrl", "https://app.example.com");
+
+        Map<Integer, Exception> failures = emailService.sendInvitationEmails(List.of(
+                EmailUtil.createInvitationQueueData("alice@example.com", null, "token-1", "2026-10-25")));
+
+        assertTrue(failures.isEmpty());
+        ArgumentCaptor<MimeMessage[]> sent = ArgumentCaptor.forClass(MimeMessage[].class);
+        verify(mailSender).send(sent.capture());
+        assertEquals("You have been invited to join an organization", sent.getValue()[0].getSubject());
+    }
+
+    private static SpringTemplateEngine templateEngine() {
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix("templates/");
+        resolver.setSuffix(".html");
+        resolver.setTemplateMode(TemplateMode.HTML);
+        resolver.setCharacterEncoding("UTF-8");
+
+        SpringTemplateEngine engine = new SpringTemplateEngine();
+        engine.setTemplateResolver(resolver);
+        return engine;
+    }
+}
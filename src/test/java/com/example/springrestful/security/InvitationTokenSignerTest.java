@@ -0,0 +1,106 @@
+package com.example.springrestful.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InvitationTokenSignerTest {
+    private static final String SECRET = "invitation-test-secret";
+    private static final String JWT_SECRET = "jwt-test-secret";
+
+    private final InvitationTokenSigner signer = new InvitationTokenSigner(SECRET, JWT_SECRET, "");
+    private final LocalDateTime expiry = LocalDateTime.now().plusDays(7).truncatedTo(ChronoUnit.SECONDS);
+
+    @Test
+    void parsesTheClaimsItSigned() {
+        InvitationTokenSigner.Claims claims = signer.parse(signer.sign(42, 7, expiry)).orElseThrow();
+
+        assertEquals(new InvitationTokenSigner.Claims(42, 7, expiry), claims);
+        assertFalse(claims.isExpired());
+    }
+
+    @Test
+    void rejectsATokenWithAnyByteChanged() {
+        byte[] token = decode(signer.sign(42, 7, expiry));
+
+        for (int i = 0; i < token.length; i++) {
+            byte[] tampered = token.clone();
+            tampered[i] ^= 1;
+            assertTrue(signer.parse(encode(tampered)).isEmpty(), "byte " + i);
+        }
+    }
+
+    @Test
+    void rejectsATokenSignedWithAnotherSecret() {
+        InvitationTokenSigner other = new InvitationTokenSigner("another-secret", JWT_SECRET, "");
+
+        assertTrue(signer.parse(other.sign(42, 7, expiry)).isEmpty());
+    }
+
+    @Test
+    void rejectsTokensOfTheWrongLength() {
+        String token = signer.sign(42, 7, expiry);
+
+        assertTrue(signer.parse(token.substring(0, token.length() - 1)).isEmpty());
+        assertTrue(signer.parse(token + "A").isEmpty());
+        assertTrue(signer.parse("").isEmpty());
+        assertTrue(signer.parse(null).isEmpty());
+        // Right length, but not base64url
+        assertTrue(signer.parse("!".repeat(token.length())).isEmpty());
+    }
+
+    @Test
+    void rejectsAnUnknownVersion() {
+        byte[] token = decode(signer.sign(42, 7, expiry));
+        token[0] = 2;
+
+        assertTrue(signer.parse(encode(token)).isEmpty());
+    }
+
+    @Test
+    void parsesAnExpiredTokenAsExpired() {
+        LocalDateTime past = LocalDateTime.now().minusMinutes(1).truncatedTo(ChronoUnit.SECONDS);
+
+        InvitationTokenSigner.Claims claims = signer.parse(signer.sign(42, 7, past)).orElseThrow();
+
+        assertEquals(past, claims.expiry());
+        assertTrue(claims.isExpired());
+    }
+
+    @Test
+    void acceptsLegacyTokensOnlyUntilTheDeadline() {
+        String legacy = UUID.randomUUID().toString();
+        InvitationTokenSigner open = new InvitationTokenSigner(SECRET, JWT_SECRET,
+                Instant.now().plus(7, ChronoUnit.DAYS).toString());
+        InvitationTokenSigner closed = new InvitationTokenSigner(SECRET, JWT_SECRET,
+                Instant.now().minus(1, ChronoUnit.SECONDS).toString());
+
+        assertTrue(open.acceptsLegacyToken(legacy));
+        assertFalse(open.acceptsLegacyToken(signer.sign(42, 7, expiry)));
+        assertFalse(closed.acceptsLegacyToken(legacy));
+        assertFalse(signer.acceptsLegacyToken(legacy));
+    }
+
+    @Test
+    void requiresASecretOfItsOwn() {
+        assertThrows(IllegalStateException.class, () -> new InvitationTokenSigner("", JWT_SECRET, ""));
+        assertThrows(IllegalStateException.class, () -> new InvitationTokenSigner(JWT_SECRET, JWT_SECRET, ""));
+    }
+
+    private static byte[] decode(String token) {
+        return Base64.getUrlDecoder().decode(token);
+    }
+
+    private static String encode(byte[] token) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token);
+    }
+}
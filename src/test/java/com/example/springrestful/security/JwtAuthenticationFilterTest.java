@@ -0,0 +1,92 @@
+package com.example.springrestful.security;
+
+import com.example.springrestful.util.JwtUtil;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetailsService;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class JwtAuthenticationFilterTest {
+    private static final String TOKEN = "token";
+    private static final String EMAIL = "alice@example.com";
+
+    private final JwtUtil jwtUtil = mock(JwtUtil.class);
+    private final UserDetailsService userDetailsService = mock(UserDetailsService.class);
+    private final JwtAuthenticationFilter filter = new JwtAuthenticationFilter(jwtUtil, userDetailsService);
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void authenticatesWithAnAccessToken() throws Exception {
+        presentToken(ValidatedToken.ACCESS_TOKEN_TYPE);
+        when(userDetailsService.loadUserByUsername(EMAIL))
+                .thenReturn(User.withUsername(EMAIL).password("").roles("ADMIN").build());
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request("/api/v1/organizations"), new MockHttpServletResponse(), chain);
+
+        assertNotNull(chain.getRequest());
+        assertEquals(EMAIL, SecurityContextHolder.getContext().getAuthentication().getName());
+    }
+
+    @Test
+    void rejectsARefreshTokenAsBearerCredential() throws Exception {
+        presentToken(ValidatedToken.REFRESH_TOKEN_TYPE);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request("/api/v1/organizations"), response, chain);
+
+        assertEquals(HttpServletResponse.SC_UNAUTHORIZED, response.getStatus());
+        assertNull(chain.getRequest());
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+    }
+
+    @Test
+    void passesARefreshTokenToTheRefreshEndpointUnauthenticated() throws Exception {
+        presentToken(ValidatedToken.REFRESH_TOKEN_TYPE);
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request(PublicEndpoints.REFRESH_TOKEN), new MockHttpServletResponse(), chain);
+
+        assertNotNull(chain.getRequest());
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+    }
+
+    private void presentToken(String tokenType) {
+        when(jwtUtil.extractTokenFromRequest(any())).thenReturn(TOKEN);
+        when(jwtUtil.validateToken(TOKEN)).thenReturn(Optional.of(ValidatedToken.builder()
+                .token(TOKEN)
+                .subject(EMAIL)
+                .expiration(new Date(System.currentTimeMillis() + 60_000))
+                .tokenId("jti")
+                .tokenType(tokenType)
+                .authorities(List.of())
+                .build()));
+    }
+
+    private static MockHttpServletRequest request(String path) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+        request.addHeader("Authorization", "Bearer " + TOKEN);
+        return request;
+    }
+}
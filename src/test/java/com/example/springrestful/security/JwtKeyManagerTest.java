@@ -0,0 +1,55 @@
+package com.example.springrestful.security;
+
+import io.jsonwebtoken.security.SignatureException;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+
+class JwtKeyManagerTest {
+    private static final String SECRET = "test-secret-that-is-long-enough-for-hs256-signing";
+
+    @SuppressWarnings("unchecked")
+    private final RedisTemplate<String, String> redisTemplate = mock(RedisTemplate.class);
+
+    @Test
+    void hs256ModeAlwaysVerifiesWithTheSecret() {
+        JwtKeyManager keyManager = keyManager("HS256", "");
+
+        assertNotNull(keyManager.resolveVerificationKey("hs256"));
+        assertNotNull(keyManager.resolveVerificationKey(null));
+    }
+
+    @Test
+    void es256ModeAcceptsHs256TokensUntilTheCutoff() {
+        JwtKeyManager keyManager = keyManager("ES256", Instant.now().plus(1, ChronoUnit.DAYS).toString());
+
+        assertNotNull(keyManager.resolveVerificationKey("hs256"));
+        assertNotNull(keyManager.resolveVerificationKey(keyManager.getCurrentSigningKey().getKeyId()));
+    }
+
+    @Test
+    void es256ModeRejectsHs256TokensAfterTheCutoff() {
+        JwtKeyManager keyManager = keyManager("ES256", Instant.now().minus(1, ChronoUnit.SECONDS).toString());
+
+        assertThrows(SignatureException.class, () -> keyManager.resolveVerificationKey("hs256"));
+        assertThrows(SignatureException.class, () -> keyManager.resolveVerificationKey(null));
+    }
+
+    @Test
+    void es256ModeRejectsHs256TokensWithoutAMigrationWindow() {
+        JwtKeyManager keyManager = keyManager("ES256", "");
+
+        assertThrows(SignatureException.class, () -> keyManager.resolveVerificationKey("hs256"));
+    }
+
+    // Redis calls fail against the mock; key publishing logs and carries on, as on a Redis outage
+    private JwtKeyManager keyManager(String algorithm, String hs256AcceptedUntil) {
+        return new JwtKeyManager(redisTemplate, SECRET, algorithm, 86_400_000, 604_800_000, hs256AcceptedUntil);
+    }
+}
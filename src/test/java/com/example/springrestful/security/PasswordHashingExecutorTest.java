@@ -0,0 +1,376 @@
+package com.example.springrestful.security;
+
+import com.example.springrestful.controller.AuthController;
+import com.example.springrestful.entity.User;
+import com.example.springrestful.enums.UserRole;
+import com.example.springrestful.exception.GlobalExceptionHandler;
+import com.example.springrestful.exception.PasswordHashingBusyException;
+import com.example.springrestful.repository.AuthRepository;
+import com.example.springrestful.service.impl.CustomUserDetailsImpl;
+import com.example.springrestful.util.JwtUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.ProviderManager;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Saturates the hashing pool directly and through the login endpoint, where the controller,
+ * {@link AuthService}, {@link RehashingAuthenticationProvider} and {@link BoundedPasswordEncoder}
+ * are real.
+ */
+class PasswordHashingExecutorTest {
+    private static final String EMAIL = "alice@example.com";
+    private static final String PASSWORD = "correct-horse";
+    private static final String LOGIN_BODY = "{\"email\":\"" + EMAIL + "\",\"password\":\"" + PASSWORD + "\"}";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<Thread> blockers = new ArrayList<>();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final UserDetailsPasswordService passwordService = mock(UserDetailsPasswordService.class);
+
+    private PasswordHashingExecutor executor;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        release.countDown();
+        for (Thread blocker : blockers) {
+            blocker.join();
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    void refusesWorkOnceThreadsAndQueueAreFull() throws InterruptedException {
+        executor = new PasswordHashingExecutor(meterRegistry, 1, 1);
+        saturate(1, 1);
+
+        assertThrows(PasswordHashingBusyException.class, () -> executor.call(() -> "hash"));
+        assertEquals(1.0, meterRegistry.get("auth.password_hashing.rejected").counter().count());
+
+        release.countDown();
+        // Capacity returns once the running hashes finish
+        assertTrue(waitFor(() -> gauge("auth.password_hashing.active") == 0 && gauge("auth.password_hashing.queue.depth") == 0));
+        assertEquals("hash", executor.call(() -> "hash"));
+    }
+
+    @Test
+    void loginAnswers429WithRetryAfterWhenSaturated() throws Exception {
+        executor = new PasswordHashingExecutor(meterRegistry, 1, 1);
+        MockMvc mockMvc = loginEndpoint(new BCryptPasswordEncoder(4));
+        saturate(1, 1);
+
+        mockMvc.perform(post("/api/v1/auth/login").contentType(MediaType.APPLICATION_JSON).content(LOGIN_BODY))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"));
+    }
+
+    /**
+     * A burst of concurrent logins against a small pool: each one either succeeds or is refused
+     * with 429, and no more hashes than the pool size ever run at once.
+     */
+    @Test
+    void burstOfLoginsStaysWithinThePoolBound() throws Exception {
+        int threads = 2;
+        int queueCapacity = 4;
+        int requests = 40;
+        executor = new PasswordHashingExecutor(meterRegistry, threads, queueCapacity);
+
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        PasswordEncoder bcrypt = new BCryptPasswordEncoder(4);
+        PasswordEncoder slowEncoder = new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                return bcrypt.encode(rawPassword);
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    // Long enough that the burst arrives while the pool is busy
+                    Thread.sleep(50);
+                    return bcrypt.matches(rawPassword, encodedPassword);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(e);
+                } finally {
+                    running.decrementAndGet();
+                }
+            }
+        };
+        MockMvc mockMvc = loginEndpoint(slowEncoder);
+
+        ExecutorService clients = Executors.newFixedThreadPool(requests);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<MockHttpServletResponse>> responses = new ArrayList<>();
+        for (int i = 0; i < requests; i++) {
+            responses.add(clients.submit(() -> {
+                start.await();
+                return mockMvc.perform(post("/api/v1/auth/login")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(LOGIN_BODY))
+                        .andReturn()
+                        .getResponse();
+            }));
+        }
+        start.countDown();
+
+        int succeeded = 0;
+        int refused = 0;
+        for (Future<MockHttpServletResponse> response : responses) {
+            MockHttpServletResponse result = response.get(30, TimeUnit.SECONDS);
+            if (result.getStatus() == 200) {
+                succeeded++;
+            } else {
+                assertEquals(429, result.getStatus());
+                assertEquals("1", result.getHeader(HttpHeaders.RETRY_AFTER));
+                refused++;
+            }
+        }
+        clients.shutdown();
+
+        assertEquals(requests, succeeded + refused);
+        // Not threads + queueCapacity: the first logins also spend slots on the provider's dummy encode
+        assertTrue(succeeded > 0, "succeeded: " + succeeded);
+        assertTrue(refused > 0, "refused: " + refused);
+        assertTrue(maxRunning.get() <= threads, "concurrent hashes: " + maxRunning.get());
+        assertEquals(refused, meterRegistry.get("auth.password_hashing.rejected").counter().count());
+    }
+
+    @Test
+    void outdatedHashIsUpgradedOnLogin() throws Exception {
+        executor = new PasswordHashingExecutor(meterRegistry, 1, 1);
+        MockMvc mockMvc = loginEndpoint(upgradingEncoder(() -> { }));
+
+        mockMvc.perform(post("/api/v1/auth/login").contentType(MediaType.APPLICATION_JSON).content(LOGIN_BODY))
+                .andExpect(status().isOk());
+
+        verify(passwordService).updatePassword(any(), any());
+    }
+
+    /**
+     * The pool fills up between the password check and the rehash: the login still succeeds and
+     * the upgrade is left for a later login.
+     */
+    @Test
+    void saturatedPoolDefersTheUpgradeInsteadOfFailingTheLogin() throws Exception {
+        executor = new PasswordHashingExecutor(meterRegistry, 1, 1);
+        MockMvc mockMvc = loginEndpoint(upgradingEncoder(() -> {
+            try {
+                // The worker that checked the password may not have gone idle yet
+                assertTrue(waitFor(() -> gauge("auth.password_hashing.active") == 0));
+                saturate(1, 1);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }));
+
+        mockMvc.perform(post("/api/v1/auth/login").contentType(MediaType.APPLICATION_JSON).content(LOGIN_BODY))
+                .andExpect(status().isOk());
+
+        verify(passwordService, never()).updatePassword(any(), any());
+        assertEquals(0.0, meterRegistry.get("auth.password_hashing.rejected").counter().count());
+    }
+
+    /**
+     * Logins and another endpoint share a fixed pool of request threads, as they do in Tomcat.
+     * Logins park at most {@code threads + queueCapacity} request threads while the hashing pool
+     * is full, so a request to the other endpoint made mid-burst is answered well within the time
+     * of a single hash.
+     */
+    @Test
+    void otherEndpointsStayResponsiveDuringALoginBurst() throws Exception {
+        int threads = 2;
+        int queueCapacity = 4;
+        int requestThreads = 8;
+        int logins = 40;
+        long hashMillis = 500;
+        executor = new PasswordHashingExecutor(meterRegistry, threads, queueCapacity);
+
+        PasswordEncoder bcrypt = new BCryptPasswordEncoder(4);
+        PasswordEncoder slowEncoder = new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                return bcrypt.encode(rawPassword);
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                try {
+                    Thread.sleep(hashMillis);
+                    return bcrypt.matches(rawPassword, encodedPassword);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+        MockMvc mockMvc = loginEndpoint(slowEncoder, new PingController());
+        // Warm up MockMvc so the measured request does not pay for first-use initialisation
+        mockMvc.perform(get("/api/v1/ping")).andExpect(status().isOk());
+
+        ExecutorService requestPool = Executors.newFixedThreadPool(requestThreads);
+        List<Future<MockHttpServletResponse>> responses = new ArrayList<>();
+        for (int i = 0; i < logins; i++) {
+            responses.add(requestPool.submit(() -> mockMvc.perform(post("/api/v1/auth/login")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(LOGIN_BODY))
+                    .andReturn()
+                    .getResponse()));
+        }
+        assertTrue(waitFor(() -> gauge("auth.password_hashing.active") == threads
+                && gauge("auth.password_hashing.queue.depth") == queueCapacity));
+
+        long started = System.nanoTime();
+        MockHttpServletResponse ping = requestPool.submit(() -> mockMvc.perform(get("/api/v1/ping"))
+                .andReturn()
+                .getResponse()).get(30, TimeUnit.SECONDS);
+        long pingMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+        for (Future<MockHttpServletResponse> response : responses) {
+            int loginStatus = response.get(30, TimeUnit.SECONDS).getStatus();
+            assertTrue(loginStatus == 200 || loginStatus == 429, "login status: " + loginStatus);
+        }
+        requestPool.shutdown();
+
+        assertEquals(200, ping.getStatus());
+        assertTrue(pingMillis < hashMillis / 2, "ping took " + pingMillis + " ms");
+    }
+
+    @RestController
+    static class PingController {
+        @GetMapping("/api/v1/ping")
+        String ping() {
+            return "pong";
+        }
+    }
+
+    // Stored hashes always need upgrading; the hook runs after the password check, before the rehash
+    private static PasswordEncoder upgradingEncoder(Runnable beforeUpgrade) {
+        PasswordEncoder bcrypt = new BCryptPasswordEncoder(4);
+        return new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                return bcrypt.encode(rawPassword);
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                return bcrypt.matches(rawPassword, encodedPassword);
+            }
+
+            @Override
+            public boolean upgradeEncoding(String encodedPassword) {
+                beforeUpgrade.run();
+                return true;
+            }
+        };
+    }
+
+    private MockMvc loginEndpoint(PasswordEncoder delegate, Object... otherControllers) {
+        BoundedPasswordEncoder passwordEncoder = new BoundedPasswordEncoder(delegate, executor);
+        User user = User.builder()
+                .id(1L)
+                .email(EMAIL)
+                .username("alice")
+                .password(delegate.encode(PASSWORD))
+                .emailVerified(true)
+                .roles(Set.of(UserRole.ADMIN))
+                .build();
+
+        AuthRepository authRepository = mock(AuthRepository.class);
+        when(authRepository.findByEmail(EMAIL)).thenReturn(Optional.of(user));
+        when(passwordService.updatePassword(any(), any())).thenAnswer(invocation -> invocation.getArgument(0));
+        RehashingAuthenticationProvider provider = new RehashingAuthenticationProvider(
+                username -> new CustomUserDetailsImpl(user), passwordEncoder, passwordService);
+        JwtUtil jwtUtil = mock(JwtUtil.class);
+        when(jwtUtil.generateToken(any(), any())).thenReturn("access");
+        when(jwtUtil.generateRefreshToken(any(), any())).thenReturn("refresh");
+
+        AuthService authService = new AuthService(
+                authRepository,
+                null,
+                passwordEncoder,
+                jwtUtil,
+                new ProviderManager(provider),
+                null,
+                null,
+                null,
+                null,
+                null
+        );
+        List<Object> controllers = new ArrayList<>(List.of(otherControllers));
+        controllers.add(new AuthController(authService, jwtUtil));
+        return MockMvcBuilders.standaloneSetup(controllers.toArray())
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+    }
+
+    // Occupies every worker and queue slot with hashes that finish only on release
+    private void saturate(int threads, int queueCapacity) throws InterruptedException {
+        for (int i = 0; i < threads + queueCapacity; i++) {
+            Thread blocker = new Thread(() -> executor.call(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "blocked";
+            }));
+            blocker.start();
+            blockers.add(blocker);
+        }
+        assertTrue(waitFor(() -> gauge("auth.password_hashing.active") == threads
+                && gauge("auth.password_hashing.queue.depth") == queueCapacity));
+    }
+
+    private double gauge(String name) {
+        return meterRegistry.get(name).gauge().value();
+    }
+
+    private static boolean waitFor(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            if (condition.getAsBoolean()) {
+                return true;
+            }
+            Thread.sleep(5);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,256 @@
+package com.example.springrestful.service;
+
+import com.example.springrestful.SpringRestfulApplication;
+import com.example.springrestful.dto.BulkInvitationJobResponse;
+import com.example.springrestful.entity.EmployeeInvitation;
+import com.example.springrestful.entity.Organization;
+import com.example.springrestful.repository.EmployeeInvitationRepository;
+import com.example.springrestful.repository.OutboxEventRepository;
+import com.example.springrestful.security.InvitationTokenSigner;
+import com.example.springrestful.security.OutboxPayloadCipher;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import redis.embedded.RedisServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs bulk invitation jobs against an embedded PostgreSQL with the Flyway schema and an
+ * embedded redis-server for job progress: CSV parsing, the chunked JDBC batch insert, matching
+ * generated ids back to rows, and the tokens signed over them.
+ */
+@DataJpaTest(properties = "spring.jpa.hibernate.ddl-auto=validate")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ContextConfiguration(classes = SpringRestfulApplication.class)
+// The job commits on its own thread, so the test must not hold an open transaction
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BulkInvitationServiceTest {
+    private static final EmbeddedPostgres POSTGRES = startPostgres();
+    private static final long ORGANIZATION_ID = 1;
+
+    private static RedisServer redisServer;
+    private static LettuceConnectionFactory connectionFactory;
+    private static RedisTemplate<String, String> redisTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EmployeeInvitationRepository invitationRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final InvitationTokenSigner tokenSigner = new InvitationTokenSigner("invitation-test-secret", "jwt", "");
+    private final Organization organization = Organization.builder().id(ORGANIZATION_ID).name("Acme Corp").build();
+
+    private BulkInvitationService bulkInvitationService;
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> POSTGRES.getJdbcUrl("postgres", "postgres"));
+        registry.add("spring.datasource.username", () -> "postgres");
+        registry.add("spring.datasource.password", () -> "");
+    }
+
+    @BeforeAll
+    static void startRedis() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        redisServer = new RedisServer(port);
+        redisServer.start();
+
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("localhost", port));
+        connectionFactory.afterPropertiesSet();
+
+        redisTemplate = new RedisTemplate<>();
+        redisTemplate.setConnectionFactory(connectionFactory);
+        StringRedisSerializer serializer = new StringRedisSerializer();
+        redisTemplate.setKeySerializer(serializer);
+        redisTemplate.setValueSerializer(serializer);
+        redisTemplate.setHashKeySerializer(serializer);
+        redisTemplate.setHashValueSerializer(serializer);
+        redisTemplate.afterPropertiesSet();
+    }
+
+    @AfterAll
+    static void stopServers() throws IOException {
+        connectionFactory.destroy();
+        redisServer.stop();
+        POSTGRES.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.execute("TRUNCATE employee_invitations, outbox_events, organizations RESTART IDENTITY CASCADE");
+        jdbcTemplate.update("INSERT INTO organizations (id, name) VALUES (?, ?)", ORGANIZATION_ID, "Acme Corp");
+
+        OrganizationService organizationService = mock(OrganizationService.class);
+        when(organizationService.getOrganizationById(ORGANIZATION_ID)).thenReturn(organization);
+        OutboxService outboxService = new OutboxService(mock(OutboxEventRepository.class), jdbcTemplate,
+                new ObjectMapper(), mock(OutboxRelay.class), new OutboxPayloadCipher("outbox-test-key", "jwt"));
+
+        // Chunks of 3 make the upload below span several transactions and batches
+        bulkInvitationService = new BulkInvitationService(organizationService, invitationRepository, outboxService,
+                tokenSigner, jdbcTemplate, redisTemplate, transactionManager, 3, 100, 1, 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        bulkInvitationService.shutdown();
+    }
+
+    @Test
+    void csvUploadInsertsInvitationsWithTokensSignedOverTheirIds() throws Exception {
+        insertPending("already@example.com");
+        String csv = "﻿Email,Name\n" +
+                "\"Alice@Example.com\",Alice\n" +
+                "bob@example.com,Bob\n" +
+                "\n" +
+                "ALICE@example.com\n" +
+                "not-an-email\n" +
+                "Already@Example.com\n" +
+                " carol@example.com ,Carol\n" +
+                "dave@example.com\n" +
+                "erin@example.com\n";
+
+        BulkInvitationJobResponse job = awaitCompletion(bulkInvitationService.submitCsv(
+                ORGANIZATION_ID, new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8))));
+
+        assertEquals(8, job.getTotal());
+        assertEquals(5, job.getCreated());
+        // ALICE@ repeats Alice@ in the upload; Already@ matches the existing pending invitation
+        assertEquals(2, job.getSkippedDuplicates());
+        assertEquals(1, job.getInvalid());
+
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "SELECT id, email, invitation_token, token_expiry FROM employee_invitations " +
+                        "WHERE email <> 'already@example.com' ORDER BY id");
+        assertEquals(List.of("alice@example.com", "bob@example.com", "carol@example.com", "dave@example.com",
+                "erin@example.com"), rows.stream().map(row -> row.get("email")).toList());
+        for (Map<String, Object> row : rows) {
+            InvitationTokenSigner.Claims claims = tokenSigner.parse((String) row.get("invitation_token")).orElseThrow();
+            assertEquals(((Number) row.get("id")).longValue(), claims.invitationId());
+            assertEquals(ORGANIZATION_ID, claims.organizationId());
+            assertEquals(((Timestamp) row.get("token_expiry")).toLocalDateTime(), claims.expiry());
+        }
+
+        assertEquals(5, countOutbox("INVITATION_CACHED"));
+        assertEquals(5, countOutbox("INVITATION_EMAIL_REQUESTED"));
+    }
+
+    @Test
+    void onePendingInvitationPerEmailRegardlessOfCase() {
+        insertPending("bob@example.com");
+
+        assertThrows(DuplicateKeyException.class, () -> insertPending("Bob@Example.com"));
+        // Only pending invitations are unique; history rows are not
+        jdbcTemplate.update("UPDATE employee_invitations SET status = 'CANCELLED'");
+        insertPending("Bob@Example.com");
+    }
+
+    @Test
+    void batchInsertSkipsRowsThatLostARaceAndKeepsIdsMatched() {
+        insertPending("bob@example.com");
+        LocalDateTime expiry = EmployeeInvitationService.newTokenExpiry();
+        List<EmployeeInvitation> invitations = List.of(
+                invitation("alice@example.com", expiry),
+                invitation("bob@example.com", expiry),
+                invitation("carol@example.com", expiry)
+        );
+
+        List<EmployeeInvitation> inserted = new TransactionTemplate(transactionManager)
+                .execute(status -> bulkInvitationService.insertInvitations(invitations));
+
+        assertEquals(List.of("alice@example.com", "carol@example.com"),
+                inserted.stream().map(EmployeeInvitation::getEmail).toList());
+        for (EmployeeInvitation invitation : inserted) {
+            assertEquals(invitation.getEmail(), jdbcTemplate.queryForObject(
+                    "SELECT email FROM employee_invitations WHERE id = ?", String.class, invitation.getId()));
+            assertEquals(invitation.getInvitationToken(), jdbcTemplate.queryForObject(
+                    "SELECT invitation_token FROM employee_invitations WHERE id = ?", String.class, invitation.getId()));
+            assertEquals(invitation.getId(), tokenSigner.parse(invitation.getInvitationToken()).orElseThrow().invitationId());
+        }
+    }
+
+    private BulkInvitationJobResponse awaitCompletion(BulkInvitationJobResponse submitted) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (System.nanoTime() < deadline) {
+            BulkInvitationJobResponse job = bulkInvitationService.getJob(submitted.getJobId()).orElseThrow();
+            if (BulkInvitationService.JobStatus.COMPLETED.name().equals(job.getStatus())) {
+                return job;
+            }
+            assertTrue(!BulkInvitationService.JobStatus.FAILED.name().equals(job.getStatus()), job.getError());
+            Thread.sleep(20);
+        }
+        throw new AssertionError("Bulk invitation job did not complete");
+    }
+
+    private void insertPending(String email) {
+        jdbcTemplate.update("INSERT INTO employee_invitations " +
+                        "(email, invitation_token, token_expiry, organization_id, status, created_at) " +
+                        "VALUES (?, ?, now() + interval '7 days', ?, 'PENDING', now())",
+                email, EmployeeInvitationService.placeholderToken(), ORGANIZATION_ID);
+    }
+
+    private EmployeeInvitation invitation(String email, LocalDateTime expiry) {
+        return EmployeeInvitation.builder()
+                .email(email)
+                .organization(organization)
+                .invitationToken(EmployeeInvitationService.placeholderToken())
+                .tokenExpiry(expiry)
+                .status(EmployeeInvitation.InvitationStatus.PENDING)
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+
+    private long countOutbox(String eventType) {
+        return jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM outbox_events WHERE event_type = ?", Long.class, eventType);
+    }
+
+    private static EmbeddedPostgres startPostgres() {
+        try {
+            return EmbeddedPostgres.builder().start();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not start embedded PostgreSQL", e);
+        }
+    }
+}
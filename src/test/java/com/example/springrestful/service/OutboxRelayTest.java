@@ -0,0 +1,195 @@
+package com.example.springrestful.service;
+
+import com.example.springrestful.entity.OutboxEvent;
+import com.example.springrestful.repository.OutboxEventRepository;
+import com.example.springrestful.security.EmailQueueService;
+import com.example.springrestful.security.MailQueue;
+import com.example.springrestful.security.OutboxPayloadCipher;
+import com.example.springrestful.security.VerificationCodeHasher;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Relays outbox events into an embedded redis-server. The database side (claiming and deleting
+ * rows) is mocked.
+ */
+class OutboxRelayTest {
+    private static final String EMAIL = "alice@example.com";
+    private static final String CODE = "482913";
+    private static final String CODE_KEY = "verification_code:" + EMAIL;
+
+    private static RedisServer redisServer;
+    private static LettuceConnectionFactory connectionFactory;
+    private static RedisTemplate<String, String> redisTemplate;
+
+    private final OutboxEventRepository outboxEventRepository = mock(OutboxEventRepository.class);
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final OutboxPayloadCipher payloadCipher = new OutboxPayloadCipher("outbox-test-key", "jwt-test-secret");
+
+    private OutboxRelay outboxRelay;
+    private OutboxService outboxService;
+
+    @BeforeAll
+    static void startRedis() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        redisServer = new RedisServer(port);
+        redisServer.start();
+
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("localhost", port));
+        connectionFactory.afterPropertiesSet();
+
+        redisTemplate = new RedisTemplate<>();
+        redisTemplate.setConnectionFactory(connectionFactory);
+        StringRedisSerializer serializer = new StringRedisSerializer();
+        redisTemplate.setKeySerializer(serializer);
+        redisTemplate.setValueSerializer(serializer);
+        redisTemplate.setHashKeySerializer(serializer);
+        redisTemplate.setHashValueSerializer(serializer);
+        redisTemplate.afterPropertiesSet();
+    }
+
+    @AfterAll
+    static void stopRedis() throws IOException {
+        connectionFactory.destroy();
+        redisServer.stop();
+    }
+
+    @BeforeEach
+    void setUp() {
+        redisTemplate.execute(connection -> {
+            connection.serverCommands().flushAll();
+            return null;
+        }, true);
+        // One partition per queue, so the test knows which stream each email lands on
+        EmailQueueService emailQueueService = new EmailQueueService(redisTemplate, objectMapper, 1, 3, 1, 10);
+        outboxRelay = new OutboxRelay(outboxEventRepository, redisTemplate, emailQueueService, objectMapper,
+                payloadCipher, mock(PlatformTransactionManager.class), 100, 1000, 300_000);
+        outboxService = new OutboxService(outboxEventRepository, null, objectMapper, outboxRelay, payloadCipher);
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        TransactionSynchronizationManager.clearSynchronization();
+        outboxRelay.destroy();
+    }
+
+    @Test
+    void issuedCodeIsStoredEncryptedAndEmailedInTheClear() {
+        OutboxEvent event = recordCodeIssued(1L);
+
+        assertFalse(event.getPayload().contains(CODE), event.getPayload());
+
+        claim(event);
+        assertEquals(1, outboxRelay.relayBatch());
+
+        assertEquals("hash", redisTemplate.opsForValue().get(CODE_KEY));
+        List<MapRecord<String, Object, Object>> emails = redisTemplate.opsForStream()
+                .read(StreamOffset.fromStart(MailQueue.VERIFICATION.streamKey(0)));
+        assertEquals(1, emails.size());
+        assertEquals(CODE, emails.get(0).getValue().get("verificationCode"));
+        assertEquals(List.of(event), deleted());
+    }
+
+    @Test
+    void reschedulesOnlyTheEventWhoseCommandsFailed() throws Exception {
+        OutboxEvent code = recordCodeIssued(1L);
+        OutboxEvent invitationEmail = event(2L, OutboxEvent.EventType.INVITATION_EMAIL_REQUESTED,
+                Map.of("toEmail", "bob@example.com", "type", "invitation"));
+        OutboxEvent cached = event(3L, OutboxEvent.EventType.INVITATION_CACHED,
+                OutboxService.invitationCachedPayload("invitation:token", Map.of("email", "bob@example.com"),
+                        Duration.ofMinutes(5)));
+        OutboxEvent tampered = recordCodeIssued(4L);
+        tampered.setPayload(tampered.getPayload().replaceFirst("\"encryptedCode\":\"[^\"]+\"",
+                "\"encryptedCode\":\"" + payloadCipher.encrypt(CODE, "mallory@example.com") + "\""));
+        OutboxEvent plaintext = recordCodeIssued(5L);
+        plaintext.setPayload(plaintext.getPayload().replaceFirst("\"encryptedCode\":\"[^\"]+\"",
+                "\"code\":\"" + CODE + "\""));
+        // XADD to a key holding a string fails with WRONGTYPE, and only that command fails
+        redisTemplate.opsForValue().set(MailQueue.INVITATION.streamKey(0), "not a stream");
+
+        claim(code, invitationEmail, cached, tampered, plaintext);
+        assertEquals(-1, outboxRelay.relayBatch());
+
+        assertEquals(List.of(code, cached), deleted());
+        assertEquals(1, invitationEmail.getAttempts());
+        assertTrue(invitationEmail.getAvailableAt().isAfter(LocalDateTime.now()));
+        assertTrue(invitationEmail.getLastError().contains("WRONGTYPE"), invitationEmail.getLastError());
+        // A ciphertext moved to another recipient's row doesn't decrypt
+        assertEquals(1, tampered.getAttempts());
+        // Codes are never relayed from a plaintext payload
+        assertEquals(1, plaintext.getAttempts());
+        assertTrue(plaintext.getLastError().contains("no encrypted code"), plaintext.getLastError());
+        assertEquals(0, code.getAttempts());
+        assertEquals(0, cached.getAttempts());
+
+        assertEquals("hash", redisTemplate.opsForValue().get(CODE_KEY));
+        assertEquals("bob@example.com", redisTemplate.opsForHash().get("invitation:token", "email"));
+    }
+
+    private OutboxEvent recordCodeIssued(long id) {
+        outboxService.recordCodeIssued(VerificationCodeHasher.Purpose.EMAIL_VERIFICATION, EMAIL, CODE_KEY,
+                "hash", CODE, Duration.ofMinutes(10));
+        ArgumentCaptor<OutboxEvent> saved = ArgumentCaptor.forClass(OutboxEvent.class);
+        verify(outboxEventRepository, atLeastOnce()).save(saved.capture());
+        OutboxEvent event = saved.getValue();
+        event.setId(id);
+        return event;
+    }
+
+    private OutboxEvent event(long id, OutboxEvent.EventType eventType, Map<String, ?> payload) throws Exception {
+        return OutboxEvent.builder()
+                .id(id)
+                .eventType(eventType)
+                .payload(objectMapper.writeValueAsString(payload))
+                .build();
+    }
+
+    private void claim(OutboxEvent... events) {
+        when(outboxEventRepository.claimBatch(any(), anyInt())).thenReturn(List.of(events));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<OutboxEvent> deleted() {
+        ArgumentCaptor<Iterable<OutboxEvent>> captor = ArgumentCaptor.forClass(Iterable.class);
+        verify(outboxEventRepository).deleteAllInBatch(captor.capture());
+        List<OutboxEvent> events = new ArrayList<>();
+        captor.getValue().forEach(events::add);
+        return events;
+    }
+}